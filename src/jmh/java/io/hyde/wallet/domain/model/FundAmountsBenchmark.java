@@ -0,0 +1,81 @@
+package io.hyde.wallet.domain.model;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.hyde.wallet.domain.model.command.BlockFundsCommand;
+import io.hyde.wallet.domain.model.command.DepositFundsCommand;
+import io.hyde.wallet.domain.model.command.ReleaseFundsCommand;
+import io.hyde.wallet.domain.model.command.result.BlockFundsCommandResult;
+import io.hyde.wallet.domain.model.command.result.WalletCommandResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+//Compares funds kept as BigDecimals with funds kept in minor units, run with: ./gradlew jmh
+//Add -prof gc to jmh arguments for allocation rate per operation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FundAmountsBenchmark {
+
+    private static final String BTC = "BTC";
+    private static final BigDecimal DEPOSIT_AMOUNT = new BigDecimal("1000000.00");
+    private static final BigDecimal BLOCK_AMOUNT = new BigDecimal("0.12345678");
+    private static final int EXISTING_LOCKS = 20;
+
+    @Param({"decimal", "minor-units"})
+    private String representation;
+
+    private final Clock clock = Clock.systemUTC();
+    private Wallet wallet;
+
+    @Setup
+    public void setUp() {
+        //Command execution logs are not part of compared representations
+        ((Logger) LoggerFactory.getLogger(Wallet.class)).setLevel(Level.OFF);
+        Function<String, Optional<Integer>> tokenScales = "minor-units".equals(representation)
+                ? token -> Optional.of(8)
+                : token -> Optional.empty();
+        wallet = Wallet.forOwner(UUID.randomUUID().toString());
+        wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, DEPOSIT_AMOUNT), clock, tokenScales, LockIdGenerator.RANDOM_UUID);
+        for (int i = 0; i < EXISTING_LOCKS; i++) {
+            block();
+        }
+    }
+
+    @Benchmark
+    public WalletCommandResult blockAndRelease() {
+        String lockId = block();
+        return wallet.execute(new ReleaseFundsCommand(UUID.randomUUID().toString(), wallet.getId(), lockId), clock);
+    }
+
+    @Benchmark
+    public WalletState walletState() {
+        return WalletState.from(wallet);
+    }
+
+    private String block() {
+        BlockFundsCommandResult result = (BlockFundsCommandResult) wallet.execute(
+                new BlockFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, BLOCK_AMOUNT), clock);
+        return result.getBlockedFundsLockId();
+    }
+}
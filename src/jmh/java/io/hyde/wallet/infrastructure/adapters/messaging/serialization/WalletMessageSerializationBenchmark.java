@@ -0,0 +1,121 @@
+package io.hyde.wallet.infrastructure.adapters.messaging.serialization;
+
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.BlockFundsCommandEvent;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WalletCommandEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsBlockedEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletSnapshot;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletSnapshot.FundSnapshot;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+//Compares Spring's JSON serialization with type headers of wallet messages with WalletMessageSerializer
+//in both formats, run with: ./gradlew jmh. Message sizes (value and headers) are printed at setup.
+//Add -prof gc to jmh arguments for allocation rate per operation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalletMessageSerializationBenchmark {
+
+    private static final String TOPIC = "wallet-events";
+
+    @Param({"spring-json", "json", "smile"})
+    private String codec;
+
+    //Wallet snapshot of each event lists all funds of the wallet
+    @Param({"1", "20"})
+    private int funds;
+
+    private Serializer<Object> serializer;
+    private Deserializer<Object> deserializer;
+    private WalletEvent event;
+    private WalletCommandEvent command;
+    private byte[] serializedEvent;
+    private Headers eventHeaders;
+    private byte[] serializedCommand;
+    private Headers commandHeaders;
+
+    @Setup
+    public void setUp() {
+        if ("spring-json".equals(codec)) {
+            serializer = new JsonSerializer<>();
+            JsonDeserializer<Object> jsonDeserializer = new JsonDeserializer<>();
+            //Type headers are kept, so the same record can be deserialized in each invocation
+            jsonDeserializer.configure(Map.of(
+                    JsonDeserializer.TRUSTED_PACKAGES, "*",
+                    JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false), false);
+            deserializer = jsonDeserializer;
+        } else {
+            serializer = new WalletMessageSerializer();
+            serializer.configure(Map.of(WalletMessageFormat.FORMAT_CONFIG, codec), false);
+            deserializer = new WalletMessageDeserializer();
+        }
+        String walletId = UUID.randomUUID().toString();
+        event = new FundsBlockedEvent(
+                UUID.randomUUID().toString(),
+                "TOKEN0",
+                new BigDecimal("0.12345678"),
+                UUID.randomUUID().toString(),
+                new WalletSnapshot(walletId, UUID.randomUUID().toString(), IntStream.range(0, funds)
+                        .mapToObj(i -> new FundSnapshot("TOKEN" + i, new BigDecimal("999999.87654322"), new BigDecimal("0.12345678")))
+                        .toList()),
+                LocalDateTime.now());
+        command = new BlockFundsCommandEvent(UUID.randomUUID().toString(), walletId, "TOKEN0", new BigDecimal("0.12345678"));
+
+        eventHeaders = new RecordHeaders();
+        serializedEvent = serializer.serialize(TOPIC, eventHeaders, event);
+        commandHeaders = new RecordHeaders();
+        serializedCommand = serializer.serialize(TOPIC, commandHeaders, command);
+        System.out.printf("%n%s, %d funds: event %d bytes + headers %d bytes, command %d bytes + headers %d bytes%n",
+                codec, funds, serializedEvent.length, size(eventHeaders), serializedCommand.length, size(commandHeaders));
+    }
+
+    @Benchmark
+    public byte[] serializeEvent() {
+        return serializer.serialize(TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public Object deserializeEvent() {
+        return deserializer.deserialize(TOPIC, eventHeaders, serializedEvent);
+    }
+
+    @Benchmark
+    public Object deserializeCommand() {
+        return deserializer.deserialize(TOPIC, commandHeaders, serializedCommand);
+    }
+
+    private static int size(Headers headers) {
+        int size = 0;
+        for (Header header : headers) {
+            size += header.key().length() + header.value().length;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,35 @@
+package io.hyde.wallet.application.config;
+
+import io.hyde.wallet.domain.model.LockIdGenerator;
+import io.hyde.wallet.domain.model.TimeOrderedLockIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
+@Configuration
+class LockIdGeneratorConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "wallets.lock-ids.generator", havingValue = "time-ordered", matchIfMissing = true)
+    LockIdGenerator timeOrderedLockIdGenerator(Clock clock, @Value("${wallets.lock-ids.node-id}") int nodeId) {
+        if (nodeId < 0) {
+            //Lock ids have to be unique only within wallet, so random node id is enough when it's not configured
+            nodeId = ThreadLocalRandom.current().nextInt(TimeOrderedLockIdGenerator.MAX_NODE_ID + 1);
+        }
+        log.info("Generating time ordered lock ids with node id: {}", nodeId);
+        return new TimeOrderedLockIdGenerator(clock, nodeId);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "wallets.lock-ids.generator", havingValue = "uuid")
+    LockIdGenerator randomUuidLockIdGenerator() {
+        log.info("Generating random UUID lock ids");
+        return LockIdGenerator.RANDOM_UUID;
+    }
+}
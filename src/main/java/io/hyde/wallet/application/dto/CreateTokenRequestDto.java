@@ -2,9 +2,9 @@ package io.hyde.wallet.application.dto;
 
 import io.hyde.wallet.domain.model.Token;
 
-public record CreateTokenRequestDto(String name) {
+public record CreateTokenRequestDto(String name, Integer scale) {
 
     public Token toToken() {
-        return Token.ofName(name);
+        return Token.of(name, scale);
     }
 }
@@ -1,13 +1,19 @@
 package io.hyde.wallet.application.ports.input;
 
 import io.hyde.wallet.domain.model.Wallet;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Optional;
+
 public interface FindWalletsUseCase {
 
     Mono<Page<Wallet>> findAllWallets(Pageable pageable);
 
+    Flux<Wallet> findAllWallets(Optional<String> afterId, Limit limit);
+
     Mono<Wallet> findWallet(String id);
 }
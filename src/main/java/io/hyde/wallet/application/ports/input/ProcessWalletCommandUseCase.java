@@ -3,7 +3,16 @@ package io.hyde.wallet.application.ports.input;
 import io.hyde.wallet.domain.model.command.WalletCommand;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface ProcessWalletCommandUseCase {
 
     Mono<Void> process(WalletCommand command);
+
+    //All commands have to be related to the same wallet
+    Mono<Void> processBatch(List<WalletCommand> commands);
+
+    //Events of executed commands were committed in exactly once mode
+    Mono<Void> markExecutedCommandsAsSend(Collection<String> executedCommandIds);
 }
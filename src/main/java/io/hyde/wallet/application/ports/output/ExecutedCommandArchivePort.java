@@ -0,0 +1,15 @@
+package io.hyde.wallet.application.ports.output;
+
+import io.hyde.wallet.domain.model.ExecutedCommand;
+import io.hyde.wallet.domain.model.ExecutedCommandsStorageStats;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ExecutedCommandArchivePort {
+
+    //Idempotent, so commands archived by interrupted run can be archived again
+    Mono<Void> archive(List<ExecutedCommand> executedCommands);
+
+    Mono<ExecutedCommandsStorageStats> getStorageStats();
+}
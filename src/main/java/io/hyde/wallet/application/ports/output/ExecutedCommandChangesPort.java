@@ -0,0 +1,12 @@
+package io.hyde.wallet.application.ports.output;
+
+import io.hyde.wallet.domain.model.ExecutedCommandChange;
+import reactor.core.publisher.Flux;
+
+import java.util.Optional;
+
+public interface ExecutedCommandChangesPort {
+
+    //Infinite stream of inserted not send executed commands, starting right after given resume token if present
+    Flux<ExecutedCommandChange> watchNotSendInserts(Optional<String> resumeToken);
+}
@@ -6,6 +6,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 public interface ExecutedCommandPort {
 
@@ -13,8 +14,27 @@ public interface ExecutedCommandPort {
 
     Mono<Boolean> existsByWalletIdAndCommandIdNotAndSend(String walletId, String commandId, boolean send);
 
+    Mono<Boolean> existsByWalletIdAndSend(String walletId, boolean send);
+
+    Mono<Boolean> existsByWalletIdAndSendAndCreatedDateLessThan(String walletId, boolean send, LocalDateTime createdDate);
+
+    Flux<ExecutedCommand> findAllByWalletIdAndCommandIdIn(String walletId, Collection<String> commandIds);
+
     Flux<ExecutedCommand> findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(
             boolean send, LocalDateTime localDateTime, Pageable pageable);
 
+    Flux<ExecutedCommand> findAllBySendAndCreatedDateLessThanAndWalletIdNotInOrderByCreatedDateAsc(
+            boolean send, LocalDateTime localDateTime, Collection<String> walletIds, Pageable pageable);
+
+    Mono<Long> countBySend(boolean send);
+
     <C extends ExecutedCommand> Mono<C> save(C command);
+
+    <C extends ExecutedCommand> Flux<C> saveAll(Iterable<C> commands);
+
+    Mono<Long> markAsSendById(String id);
+
+    Mono<Long> markAllAsSendByIds(Collection<String> ids);
+
+    Mono<Void> deleteAllById(Iterable<? extends String> ids);
 }
@@ -0,0 +1,16 @@
+package io.hyde.wallet.application.ports.output;
+
+import io.hyde.wallet.domain.model.OwnerWallets;
+import reactor.core.publisher.Mono;
+
+public interface OwnerWalletsPort {
+
+    Mono<Boolean> existsById(String ownerId);
+
+    <T extends OwnerWallets> Mono<T> insert(T ownerWallets);
+
+    //Returns number of updated documents, 0 when limit is reached or owner has no counter yet
+    Mono<Long> incrementWalletsCount(String ownerId, int walletsLimit);
+
+    Mono<Long> decrementWalletsCount(String ownerId);
+}
@@ -0,0 +1,11 @@
+package io.hyde.wallet.application.ports.output;
+
+import io.hyde.wallet.domain.model.ResumeToken;
+import reactor.core.publisher.Mono;
+
+public interface ResumeTokenPort {
+
+    Mono<ResumeToken> findById(String id);
+
+    <T extends ResumeToken> Mono<T> save(T resumeToken);
+}
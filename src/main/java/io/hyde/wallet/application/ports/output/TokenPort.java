@@ -10,5 +10,7 @@ public interface TokenPort {
 
     <T extends Token> Mono<T> save(T token);
 
+    Mono<Token> findByName(String name);
+
     Mono<Boolean> existsByName(String name);
 }
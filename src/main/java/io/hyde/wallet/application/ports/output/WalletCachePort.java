@@ -0,0 +1,16 @@
+package io.hyde.wallet.application.ports.output;
+
+import io.hyde.wallet.domain.model.Wallet;
+
+import java.util.Optional;
+
+public interface WalletCachePort {
+
+    Optional<Wallet> get(String id);
+
+    void put(Wallet wallet);
+
+    void invalidate(String id);
+
+    void invalidateAll();
+}
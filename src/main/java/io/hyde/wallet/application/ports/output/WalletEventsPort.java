@@ -2,11 +2,18 @@ package io.hyde.wallet.application.ports.output;
 
 import io.hyde.wallet.domain.model.ExecutedCommand;
 import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface WalletEventsPort {
 
     Mono<Void> sendEventFromExecutedCommand(ExecutedCommand executedCommand);
 
+    //Events are pipelined, returns executed commands in order as their events are acknowledged
+    //and fails on first event which couldn't be sent, commands of the same wallet are expected
+    Flux<ExecutedCommand> sendEventsFromExecutedCommands(List<ExecutedCommand> executedCommands);
+
     Mono<Void> sendEvent(WalletEvent event);
 }
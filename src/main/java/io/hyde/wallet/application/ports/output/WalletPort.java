@@ -1,6 +1,7 @@
 package io.hyde.wallet.application.ports.output;
 
 import io.hyde.wallet.domain.model.Wallet;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -15,9 +16,17 @@ public interface WalletPort {
 
     Flux<Wallet> findAllBy(Pageable pageable);
 
+    Flux<Wallet> findAllByOrderByIdAsc(Limit limit);
+
+    Flux<Wallet> findAllByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
     Mono<Long> count();
 
+    Mono<Long> estimatedCount();
+
     <W extends Wallet> Mono<W> save(W wallet);
 
     Flux<Wallet> findAllWithoutStoredLastExecutedCommand(LocalDateTime lastModifiedDateBefore);
+
+    Mono<Long> markLastExecutedCommandAsStored(String id, Integer version);
 }
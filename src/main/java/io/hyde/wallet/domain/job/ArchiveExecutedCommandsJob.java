@@ -0,0 +1,119 @@
+package io.hyde.wallet.domain.job;
+
+import io.hyde.wallet.application.ports.output.ExecutedCommandArchivePort;
+import io.hyde.wallet.application.ports.output.ExecutedCommandPort;
+import io.hyde.wallet.domain.model.ExecutedCommand;
+import io.hyde.wallet.domain.model.ExecutedCommandsStorageStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Removes send executed commands older than retention, optionally copying them to archive first.
+//Redelivered commands not found in wallet's recent commands are detected from executed commands,
+//so retention is also the window in which such duplicates are detected. Not send commands are never removed.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jobs.archive-executed-commands.enabled", havingValue = "true")
+public class ArchiveExecutedCommandsJob {
+
+    private final Clock clock;
+    private final Duration retention;
+    private final boolean archive;
+    private final int batchSize;
+    private final Duration jobTimeout;
+    private final ExecutedCommandPort executedCommandPort;
+    private final ExecutedCommandArchivePort executedCommandArchivePort;
+    private final Counter removedCounter;
+    private final AtomicLong dataSize;
+    private final AtomicLong storageSize;
+    private final AtomicLong indexSize;
+
+    public ArchiveExecutedCommandsJob(Clock clock,
+                                      @Value("${jobs.archive-executed-commands.retention}") Duration retention,
+                                      @Value("${jobs.archive-executed-commands.archive}") boolean archive,
+                                      @Value("${jobs.archive-executed-commands.batch-size}") int batchSize,
+                                      @Value("${jobs.archive-executed-commands.timeout}") Duration jobTimeout,
+                                      ExecutedCommandPort executedCommandPort,
+                                      ExecutedCommandArchivePort executedCommandArchivePort,
+                                      MeterRegistry meterRegistry) {
+        this.clock = clock;
+        this.retention = retention;
+        this.archive = archive;
+        this.batchSize = batchSize;
+        this.jobTimeout = jobTimeout;
+        this.executedCommandPort = executedCommandPort;
+        this.executedCommandArchivePort = executedCommandArchivePort;
+        //Archive throughput is the rate of removed counter
+        this.removedCounter = Counter.builder("executed.commands.removed")
+                .description("Executed commands removed (and archived if enabled) after retention")
+                .tag("archived", String.valueOf(archive))
+                .register(meterRegistry);
+        this.dataSize = meterRegistry.gauge("executed.commands.storage.data.size", new AtomicLong());
+        this.storageSize = meterRegistry.gauge("executed.commands.storage.size", new AtomicLong());
+        this.indexSize = meterRegistry.gauge("executed.commands.storage.index.size", new AtomicLong());
+    }
+
+    @Scheduled(cron = "${jobs.archive-executed-commands.cron}")
+    @SchedulerLock(name = "archiveExecutedCommands", lockAtMostFor = "${jobs.archive-executed-commands.timeout}")
+    public void archiveExecutedCommands() {
+        LocalDateTime createdDateBefore = LocalDateTime.now(clock).minus(retention);
+        long start = System.currentTimeMillis();
+        //Storage stats are refreshed at the beginning of each run, so removal gets the rest of the timeout
+        refreshStorageStats()
+                .thenMany(removeAllBatches(createdDateBefore))
+                .take(jobTimeout)
+                .reduce(0L, Long::sum)
+                .doOnNext(removed -> log.info("Removed {} executed commands created before {} (archived: {}) in {} ms",
+                        removed, createdDateBefore, archive, System.currentTimeMillis() - start))
+                .doOnError(t -> log.error("Error while archiving executed commands", t))
+                .onErrorComplete()
+                .block(jobTimeout);
+    }
+
+    private Flux<Long> removeAllBatches(LocalDateTime createdDateBefore) {
+        //Removed commands are not returned anymore, so first page is requested until there is nothing left
+        return executedCommandPort.findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(
+                        true, createdDateBefore, PageRequest.of(0, batchSize))
+                .collectList()
+                .flatMapMany(batch -> batch.isEmpty()
+                        ? Flux.empty()
+                        : removeBatch(batch).flux().concatWith(Flux.defer(() -> removeAllBatches(createdDateBefore))));
+    }
+
+    private Mono<Long> removeBatch(List<ExecutedCommand> batch) {
+        //Commands are removed only after they are archived, failed run leaves them for the next one
+        Mono<Void> archived = archive ? executedCommandArchivePort.archive(batch) : Mono.empty();
+        return archived.then(executedCommandPort.deleteAllById(batch.stream().map(ExecutedCommand::getId).toList()))
+                .thenReturn((long) batch.size())
+                .doOnNext(removed -> removedCounter.increment(removed));
+    }
+
+    private Mono<Void> refreshStorageStats() {
+        return executedCommandArchivePort.getStorageStats()
+                .doOnNext(this::updateStorageStats)
+                .doOnError(t -> log.error("Error while getting executed commands storage stats", t))
+                .onErrorComplete()
+                .then();
+    }
+
+    private void updateStorageStats(ExecutedCommandsStorageStats stats) {
+        log.info("Executed commands storage stats: {}", stats);
+        dataSize.set(stats.dataSize());
+        storageSize.set(stats.storageSize());
+        indexSize.set(stats.indexSize());
+    }
+}
@@ -0,0 +1,205 @@
+package io.hyde.wallet.domain.job;
+
+import io.hyde.wallet.application.ports.output.ExecutedCommandChangesPort;
+import io.hyde.wallet.application.ports.output.ExecutedCommandPort;
+import io.hyde.wallet.application.ports.output.ResumeTokenPort;
+import io.hyde.wallet.application.ports.output.WalletEventsPort;
+import io.hyde.wallet.domain.model.ExecutedCommand;
+import io.hyde.wallet.domain.model.ExecutedCommandChange;
+import io.hyde.wallet.domain.model.ResumeToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+//Sends events of executed commands as soon as they are inserted, based on change stream of executed commands.
+//Change stream is consumed by one instance at a time in sessions shorter than the shedlock lock, so leadership
+//is taken over by another instance after crash. Resume token is stored after each sent batch, so next session
+//continues right after last sent command. SendExecutedCommandsEventsJob is still needed as a safety net
+//for commands skipped by the relay.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jobs.executed-commands-relay.enabled", havingValue = "true")
+public class ExecutedCommandsRelayJob {
+
+    static final String RELAY_NAME = "executedCommandsRelay";
+
+    private final Clock clock;
+    private final Duration sessionDuration;
+    private final Duration restartDelay;
+    private final Duration lockAtMostFor;
+    private final int batchSize;
+    private final Duration batchTimeout;
+    private final int parallelism;
+    private final LockProvider lockProvider;
+    private final ResumeTokenPort resumeTokenPort;
+    private final ExecutedCommandChangesPort executedCommandChangesPort;
+    private final ExecutedCommandPort executedCommandPort;
+    private final WalletEventsPort walletEventsPort;
+    private final Counter relayedCounter;
+    private final Timer relayLatency;
+    private Disposable relay;
+
+    public ExecutedCommandsRelayJob(Clock clock,
+                                    @Value("${jobs.executed-commands-relay.session-duration}") Duration sessionDuration,
+                                    @Value("${jobs.executed-commands-relay.restart-delay}") Duration restartDelay,
+                                    @Value("${jobs.executed-commands-relay.lock-at-most-for}") Duration lockAtMostFor,
+                                    @Value("${jobs.executed-commands-relay.batch-size}") int batchSize,
+                                    @Value("${jobs.executed-commands-relay.batch-timeout}") Duration batchTimeout,
+                                    @Value("${jobs.executed-commands-relay.parallelism}") int parallelism,
+                                    LockProvider lockProvider,
+                                    ResumeTokenPort resumeTokenPort,
+                                    ExecutedCommandChangesPort executedCommandChangesPort,
+                                    ExecutedCommandPort executedCommandPort,
+                                    WalletEventsPort walletEventsPort,
+                                    MeterRegistry meterRegistry) {
+        this.clock = clock;
+        this.sessionDuration = sessionDuration;
+        this.restartDelay = restartDelay;
+        this.lockAtMostFor = lockAtMostFor;
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        this.parallelism = parallelism;
+        this.lockProvider = lockProvider;
+        this.resumeTokenPort = resumeTokenPort;
+        this.executedCommandChangesPort = executedCommandChangesPort;
+        this.executedCommandPort = executedCommandPort;
+        this.walletEventsPort = walletEventsPort;
+        this.relayedCounter = Counter.builder("executed.commands.relayed")
+                .description("Events of executed commands sent by relay")
+                .register(meterRegistry);
+        this.relayLatency = Timer.builder("executed.commands.relay.latency")
+                .description("Time between storing executed command and sending its event by relay")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void onApplicationReady() {
+        relay = Mono.defer(this::relaySession)
+                .then(Mono.delay(restartDelay))
+                .repeat()
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (relay != null) {
+            relay.dispose();
+        }
+    }
+
+    Mono<Void> relaySession() {
+        //Instances which didn't get the lock just try again after restart delay
+        return Mono.usingWhen(acquireLock(), lock -> relayChanges(), this::releaseLock);
+    }
+
+    private Mono<SimpleLock> acquireLock() {
+        //Lock provider is blocking
+        return Mono.fromCallable(() -> lockProvider.lock(
+                                new LockConfiguration(clock.instant(), RELAY_NAME, lockAtMostFor, Duration.ZERO))
+                        .orElse(null))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Void> releaseLock(SimpleLock lock) {
+        return Mono.fromRunnable(lock::unlock)
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private Mono<Void> relayChanges() {
+        Set<String> failedWalletIds = ConcurrentHashMap.newKeySet();
+        return resumeTokenPort.findById(RELAY_NAME)
+                .map(ResumeToken::getToken)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .doOnNext(token -> log.info("Relaying executed commands, resume token: {}", token.orElse(null)))
+                .flatMapMany(executedCommandChangesPort::watchNotSendInserts)
+                //Only watching is limited by session duration, changes already received are still sent in this session
+                .take(sessionDuration)
+                .bufferTimeout(batchSize, batchTimeout, true)
+                .concatMap(changes -> sendChanges(changes, failedWalletIds)
+                        .then(resumeTokenPort.save(ResumeToken.of(RELAY_NAME, changes.getLast().resumeToken()))))
+                .doOnError(t -> log.error("Error while relaying executed commands", t))
+                .onErrorComplete()
+                .then();
+    }
+
+    private Mono<Void> sendChanges(List<ExecutedCommandChange> changes, Set<String> failedWalletIds) {
+        //Commands of the same wallet are sent one by one in order of insertion, different wallets are sent in parallel
+        Map<String, List<ExecutedCommand>> walletsCommands = changes.stream()
+                .map(ExecutedCommandChange::executedCommand)
+                .collect(Collectors.groupingBy(ExecutedCommand::getWalletId, LinkedHashMap::new, Collectors.toList()));
+        return Flux.fromIterable(walletsCommands.values())
+                .flatMap(commands -> sendWalletCommands(commands, failedWalletIds), parallelism)
+                .map(ExecutedCommand::getId)
+                .collectList()
+                .flatMap(this::markExecutedCommandsAsSend);
+    }
+
+    private Mono<Void> markExecutedCommandsAsSend(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        //Sent commands of the whole batch are marked with single updateMany, before resume token is stored
+        return executedCommandPort.markAllAsSendByIds(ids)
+                .doOnNext(count -> log.info("Marked {} relayed executed commands as send", count))
+                .then();
+    }
+
+    private Flux<ExecutedCommand> sendWalletCommands(List<ExecutedCommand> commands, Set<String> failedWalletIds) {
+        String walletId = commands.getFirst().getWalletId();
+        if (failedWalletIds.contains(walletId)) {
+            log.info("Not relaying {} executed commands for wallet: {}, previous command failed", commands.size(), walletId);
+            return Flux.empty();
+        }
+        //Older not send command was either stored before the relay started or its sending failed,
+        //such wallet is left for SendExecutedCommandsEventsJob, so wallet events are not sent in wrong order
+        return executedCommandPort.existsByWalletIdAndSendAndCreatedDateLessThan(walletId, false, commands.getFirst().getCreatedDate())
+                .flatMapMany(olderNotSendCommandExists -> {
+                    if (olderNotSendCommandExists) {
+                        log.info("Not relaying {} executed commands for wallet: {}, older not send commands exists",
+                                commands.size(), walletId);
+                        failedWalletIds.add(walletId);
+                        return Flux.empty();
+                    }
+                    //Events of the wallet are pipelined in order
+                    log.info("Relaying {} executed commands for wallet: {}", commands.size(), walletId);
+                    return walletEventsPort.sendEventsFromExecutedCommands(commands)
+                            .doOnNext(command -> {
+                                relayedCounter.increment();
+                                relayLatency.record(Duration.between(command.getCreatedDate(), LocalDateTime.now(clock)));
+                            });
+                })
+                //Commands sent before the failure are still marked as send
+                .onErrorResume(t -> {
+                    log.error("Error while relaying executed commands for wallet: {}", walletId, t);
+                    failedWalletIds.add(walletId);
+                    return Flux.empty();
+                });
+    }
+}
@@ -5,6 +5,7 @@ import io.hyde.wallet.domain.service.ExecutedCommandService;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -12,8 +13,11 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalDateTime;
 
+//Not needed when wallet and executed command are stored in one transaction. In exactly once mode
+//command whose executed command is missing wasn't committed, so it's redelivered and stored by listener
 @Slf4j
 @Component
+@ConditionalOnExpression("!${wallets.transactions.enabled:false} && !${wallets.exactly-once.enabled:false}")
 public class ProcessMissingExecutedCommandsJob {
 
     private final Clock clock;
@@ -40,6 +44,7 @@ public class ProcessMissingExecutedCommandsJob {
     public void processMissingExecutedCommands() {
         walletPort.findAllWithoutStoredLastExecutedCommand(LocalDateTime.now(clock).minus(walletsLastModifiedDateDelay))
                 .flatMap(wallet -> executedCommandService.sendLastExecutedCommandIfMissing(wallet)
+                        .then(walletPort.markLastExecutedCommandAsStored(wallet.getId(), wallet.getVersion()))
                         .doOnSuccess(w ->
                                 log.info("Processed missing executed command: {} for wallet: {}",
                                         wallet.getLastExecutedCommandId().orElse(null), wallet.getId()))
@@ -0,0 +1,27 @@
+package io.hyde.wallet.domain.job;
+
+import io.hyde.wallet.domain.service.TokenRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//Not locked with shedlock on purpose, every instance has to refresh its own registry
+@Component
+public class RefreshTokenRegistryJob {
+
+    private final Duration jobTimeout;
+    private final TokenRegistry tokenRegistry;
+
+    public RefreshTokenRegistryJob(@Value("${jobs.refresh-token-registry.timeout}") Duration jobTimeout,
+                                   TokenRegistry tokenRegistry) {
+        this.jobTimeout = jobTimeout;
+        this.tokenRegistry = tokenRegistry;
+    }
+
+    @Scheduled(cron = "${jobs.refresh-token-registry.cron}")
+    public void refreshTokenRegistry() {
+        tokenRegistry.refresh().block(jobTimeout);
+    }
+}
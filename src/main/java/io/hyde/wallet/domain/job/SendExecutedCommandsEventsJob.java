@@ -3,9 +3,12 @@ package io.hyde.wallet.domain.job;
 import io.hyde.wallet.application.ports.output.ExecutedCommandPort;
 import io.hyde.wallet.application.ports.output.WalletEventsPort;
 import io.hyde.wallet.domain.model.ExecutedCommand;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -16,61 +19,130 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+//In exactly once mode events are committed with consumed offsets, not send commands are only lagging marks
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "wallets.exactly-once.enabled", havingValue = "false", matchIfMissing = true)
 public class SendExecutedCommandsEventsJob {
 
     private final Clock clock;
     private final Integer pageSize;
     private final Duration eventsCreationDateDelay;
     private final Duration jobTimeout;
+    private final boolean drain;
+    private final int parallelism;
     private final ExecutedCommandPort executedCommandPort;
     private final WalletEventsPort walletEventsPort;
+    private final AtomicLong backlogSize;
+    private final Counter sentCounter;
 
     public SendExecutedCommandsEventsJob(Clock clock,
                                          @Value("${jobs.send-executed-commands.page-size}") Integer pageSize,
                                          @Value("${jobs.send-executed-commands.events-creation-date-delay}") Duration eventsCreationDateDelay,
                                          @Value("${jobs.send-executed-commands.timeout}") Duration jobTimeout,
+                                         @Value("${jobs.send-executed-commands.drain}") boolean drain,
+                                         @Value("${jobs.send-executed-commands.parallelism}") int parallelism,
                                          ExecutedCommandPort executedCommandPort,
-                                         WalletEventsPort walletEventsPort) {
+                                         WalletEventsPort walletEventsPort,
+                                         MeterRegistry meterRegistry) {
         this.clock = clock;
         this.pageSize = pageSize;
         this.eventsCreationDateDelay = eventsCreationDateDelay;
         this.jobTimeout = jobTimeout;
+        this.drain = drain;
+        this.parallelism = parallelism;
         this.executedCommandPort = executedCommandPort;
         this.walletEventsPort = walletEventsPort;
+        //Backlog is counted at the beginning of each run and decreased with each sent event,
+        //drain rate is the rate of sent counter
+        this.backlogSize = meterRegistry.gauge("executed.commands.backlog", new AtomicLong());
+        this.sentCounter = Counter.builder("executed.commands.sent")
+                .description("Events of executed commands sent by job")
+                .register(meterRegistry);
     }
 
     @Scheduled(cron = "${jobs.send-executed-commands.cron}")
     @SchedulerLock(name = "sendExecutedCommandsEvents", lockAtMostFor = "${jobs.send-executed-commands.timeout}")
     public void sendExecutedCommandsEvents() {
-        executedCommandPort.findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(
-                        false, LocalDateTime.now(clock).minus(eventsCreationDateDelay), PageRequest.of(0, pageSize))
-                .groupBy(ExecutedCommand::getWalletId)
-                .flatMap(Flux::collectList)
-                .flatMap(this::sendCommands)
+        LocalDateTime createdDateBefore = LocalDateTime.now(clock).minus(eventsCreationDateDelay);
+        Set<String> failedWalletIds = ConcurrentHashMap.newKeySet();
+        Flux<ExecutedCommand> sentCommands = drain
+                ? sendAllPages(createdDateBefore, failedWalletIds)
+                : sendPage(executedCommandPort.findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(
+                false, createdDateBefore, PageRequest.of(0, pageSize)), failedWalletIds);
+        //Backlog is counted before sending starts, so the count doesn't overwrite decrements of this run
+        countBacklog()
+                .thenMany(sentCommands)
                 .take(jobTimeout)
+                .doOnError(t -> log.error("Error while sending executed commands events", t))
+                .onErrorComplete()
                 .blockLast(jobTimeout);
     }
 
-    private Flux<ExecutedCommand> sendCommands(List<ExecutedCommand> commands) {
-        return Flux.fromIterable(commands)
-                .flatMapSequential(this::sendCommand, 1)
-                .onErrorComplete();
+    private Mono<Void> countBacklog() {
+        return executedCommandPort.countBySend(false)
+                .doOnNext(backlogSize::set)
+                .doOnError(t -> log.error("Error while counting not send executed commands", t))
+                .onErrorComplete()
+                .then();
+    }
+
+    private Flux<ExecutedCommand> sendAllPages(LocalDateTime createdDateBefore, Set<String> failedWalletIds) {
+        //Sent commands are not returned anymore, so first page is requested until there is nothing left to send.
+        //Wallets which failed in this run are excluded, so their commands are not retried in a loop
+        return executedCommandPort.findAllBySendAndCreatedDateLessThanAndWalletIdNotInOrderByCreatedDateAsc(
+                        false, createdDateBefore, Set.copyOf(failedWalletIds), PageRequest.of(0, pageSize))
+                .collectList()
+                .flatMapMany(page -> {
+                    if (page.isEmpty()) {
+                        log.info("All executed commands sent");
+                        return Flux.empty();
+                    }
+                    return sendPage(Flux.fromIterable(page), failedWalletIds)
+                            .concatWith(Flux.defer(() -> sendAllPages(createdDateBefore, failedWalletIds)));
+                });
+    }
+
+    private Flux<ExecutedCommand> sendPage(Flux<ExecutedCommand> page, Set<String> failedWalletIds) {
+        //Commands of the same wallet are sent one by one, different wallets are sent in parallel.
+        //Sent commands of the whole page are marked together, before next page is fetched
+        return page.groupBy(ExecutedCommand::getWalletId)
+                .flatMap(Flux::collectList)
+                .flatMap(commands -> sendCommands(commands, failedWalletIds), parallelism)
+                .collectList()
+                .flatMapMany(this::markExecutedCommandsAsSend);
     }
 
-    private Mono<ExecutedCommand> sendCommand(ExecutedCommand command) {
-        log.info("Sending executed command: {}", command.getCommandId());
-        return walletEventsPort.sendEventFromExecutedCommand(command)
-                .then(markExecutedCommandAsSend(command))
-                .doOnSuccess(c -> log.info("Executed command: {} sent", c.getCommandId()))
-                .doOnError(t -> log.error("Error sending executed command: {}", command.getCommandId(), t));
+    private Flux<ExecutedCommand> sendCommands(List<ExecutedCommand> commands, Set<String> failedWalletIds) {
+        //Events of the wallet are pipelined in order, commands acknowledged before the failure are still marked as send
+        String walletId = commands.getFirst().getWalletId();
+        log.info("Sending {} executed commands for wallet: {}", commands.size(), walletId);
+        return walletEventsPort.sendEventsFromExecutedCommands(commands)
+                .doOnNext(command -> {
+                    log.info("Executed command: {} sent", command.getCommandId());
+                    sentCounter.increment();
+                    backlogSize.updateAndGet(size -> Math.max(0, size - 1));
+                })
+                .onErrorResume(t -> {
+                    log.error("Error sending executed commands for wallet: {}", walletId, t);
+                    failedWalletIds.add(walletId);
+                    return Mono.empty();
+                });
     }
 
-    private Mono<ExecutedCommand> markExecutedCommandAsSend(ExecutedCommand executedCommand) {
-        log.info("Marking executed command as send: {}", executedCommand.getId());
-        executedCommand.markAsSend();
-        return executedCommandPort.save(executedCommand);
+    private Flux<ExecutedCommand> markExecutedCommandsAsSend(List<ExecutedCommand> sentCommands) {
+        if (sentCommands.isEmpty()) {
+            return Flux.empty();
+        }
+        //Single updateMany of send flag instead of saving each document with embedded wallet snapshot.
+        //If it fails, the run is stopped, so not marked commands are not sent again in a loop
+        List<String> ids = sentCommands.stream().map(ExecutedCommand::getId).toList();
+        return executedCommandPort.markAllAsSendByIds(ids)
+                .doOnNext(count -> log.info("Marked {} executed commands as send", count))
+                .thenMany(Flux.fromIterable(sentCommands));
     }
 }
@@ -13,6 +13,7 @@ import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.Objects;
 
 @NoArgsConstructor(access = AccessLevel.PACKAGE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
@@ -20,7 +21,11 @@ import java.time.LocalDateTime;
 @Document
 @CompoundIndex(name = "wallet_command_send_id", def = "{'walletId': 1, 'commandId': 1, 'send': 1}", unique = true)
 @CompoundIndex(name = "created_date_send", def = "{'createdDate': 1, 'send': 1}")
-//since this collection can grow quite fast TTL index can be added to auto remove old records
+//Only not send commands are indexed, so checking them for wallet doesn't scan whole wallet history
+@CompoundIndex(name = "wallet_not_send", def = "{'walletId': 1}", partialFilter = "{'send': false}")
+//Used for counting not send commands, size of this index is the size of the outbox backlog
+@CompoundIndex(name = "not_send", def = "{'send': 1}", partialFilter = "{'send': false}")
+//since this collection can grow quite fast old send records can be removed or archived by ArchiveExecutedCommandsJob
 public class ExecutedCommand {
 
     public static ExecutedCommand fromLastExecutedCommand(Wallet wallet) {
@@ -32,7 +37,8 @@ public class ExecutedCommand {
                 result.getId(),
                 wallet.getId(),
                 result,
-                wallet,
+                WalletState.from(wallet),
+                null,
                 false,
                 null,
                 null);
@@ -46,6 +52,9 @@ public class ExecutedCommand {
     private String commandId;
     private String walletId;
     private WalletCommandResult commandResult;
+    private WalletState walletState;
+    //Whole wallet embedded by previous versions, kept only for reading commands stored before walletState was introduced
+    @Getter(AccessLevel.NONE)
     private Wallet walletSnapshot;
     private boolean send;
     @CreatedDate
@@ -53,6 +62,10 @@ public class ExecutedCommand {
     @LastModifiedDate
     private LocalDateTime lastModifiedDate;
 
+    public WalletState getWalletState() {
+        return Objects.nonNull(walletState) ? walletState : WalletState.from(walletSnapshot);
+    }
+
     public void markAsSend() {
         this.send = true;
     }
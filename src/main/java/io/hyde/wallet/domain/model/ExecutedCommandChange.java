@@ -0,0 +1,5 @@
+package io.hyde.wallet.domain.model;
+
+//Executed command read from change stream together with resume token pointing right after it
+public record ExecutedCommandChange(ExecutedCommand executedCommand, String resumeToken) {
+}
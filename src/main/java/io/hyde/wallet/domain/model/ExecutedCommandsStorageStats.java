@@ -0,0 +1,5 @@
+package io.hyde.wallet.domain.model;
+
+//Sizes in bytes of executed commands collection, data size is uncompressed and storage size is compressed size on disk
+public record ExecutedCommandsStorageStats(long count, long dataSize, long storageSize, long indexSize) {
+}
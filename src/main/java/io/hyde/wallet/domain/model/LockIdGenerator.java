@@ -0,0 +1,13 @@
+package io.hyde.wallet.domain.model;
+
+import java.util.UUID;
+
+//Lock ids are looked up only within wallet, so they have to be unique per wallet.
+//Ids of already blocked funds can come from any generator, so they are compared only for equality
+@FunctionalInterface
+public interface LockIdGenerator {
+
+    LockIdGenerator RANDOM_UUID = () -> UUID.randomUUID().toString();
+
+    String nextLockId();
+}
@@ -0,0 +1,31 @@
+package io.hyde.wallet.domain.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+//Number of wallets created by owner, id is the owner id.
+//Incremented with conditional update when wallet is created, so wallets limit per owner is checked atomically
+@NoArgsConstructor(access = AccessLevel.PACKAGE)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+@Getter
+@Document
+public class OwnerWallets {
+
+    public static OwnerWallets of(String ownerId, long walletsCount) {
+        return OwnerWallets.builder()
+                .ownerId(ownerId)
+                .walletsCount(walletsCount)
+                .build();
+    }
+
+    @Id
+    private String ownerId;
+
+    private long walletsCount;
+}
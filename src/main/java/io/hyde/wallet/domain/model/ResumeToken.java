@@ -0,0 +1,36 @@
+package io.hyde.wallet.domain.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+//Position of change stream consumer, id is the name of the consumer and token is resume token serialized to JSON
+@NoArgsConstructor(access = AccessLevel.PACKAGE)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+@Getter
+@Document
+public class ResumeToken {
+
+    public static ResumeToken of(String id, String token) {
+        return ResumeToken.builder()
+                .id(id)
+                .token(token)
+                .build();
+    }
+
+    @Id
+    private String id;
+
+    private String token;
+
+    @LastModifiedDate
+    private LocalDateTime lastModifiedDate;
+}
@@ -0,0 +1,53 @@
+package io.hyde.wallet.domain.model;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Snowflake like lock ids: milliseconds since epoch, node id and sequence within millisecond packed into 64 bits
+//and encoded as 13 characters of Crockford's base32, so ids of one node are ordered the same way as strings.
+//Generation is lock free and never waits, when sequence of millisecond is exhausted or clock goes back,
+//time of last id is advanced instead. Unique node ids make ids unique across instances.
+public final class TimeOrderedLockIdGenerator implements LockIdGenerator {
+
+    public static final int MAX_NODE_ID = (1 << 10) - 1;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_ID_SHIFT = SEQUENCE_BITS;
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + 10;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ID_LENGTH = 13;
+
+    private final Clock clock;
+    private final long nodeId;
+    //Timestamp and sequence of last id, kept in one value, so both are updated atomically
+    private final AtomicLong lastTimestampAndSequence = new AtomicLong();
+
+    public TimeOrderedLockIdGenerator(Clock clock, int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id has to be between 0 and %d, was: %d".formatted(MAX_NODE_ID, nodeId));
+        }
+        this.clock = clock;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String nextLockId() {
+        //Sequence overflow is carried to timestamp
+        long timestampAndSequence = lastTimestampAndSequence.updateAndGet(
+                last -> Math.max(clock.millis() << SEQUENCE_BITS, last + 1));
+        long timestamp = timestampAndSequence >>> SEQUENCE_BITS;
+        long sequence = timestampAndSequence & SEQUENCE_MASK;
+        return encode((timestamp << TIMESTAMP_SHIFT) | (nodeId << NODE_ID_SHIFT) | sequence);
+    }
+
+    //Fixed length encoding of unsigned value, so lexicographic order is numeric order
+    private static String encode(long id) {
+        char[] chars = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+}
@@ -24,12 +24,23 @@ public class Token {
                 .build();
     }
 
+    public static Token of(String name, Integer scale) {
+        return Token.builder()
+                .name(name)
+                .scale(scale)
+                .build();
+    }
+
     @Id
     private String id;
 
     @Indexed(unique = true)
     private String name;
 
+    //Number of decimal places of token amounts, funds of token with scale are kept in minor units.
+    //Null for tokens with arbitrary precision, it can't be changed after token is created
+    private Integer scale;
+
     @CreatedDate
     private String createdDate;
 
@@ -23,24 +23,34 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.annotation.TypeAlias;
 import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
 import java.time.Clock;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.function.Function;
 
 @Slf4j
 @NoArgsConstructor(access = AccessLevel.PACKAGE)
 @Getter
 @Document
 @TypeAlias("wallet")
+@CompoundIndex(name = "last_modified_date_not_stored_last_command",
+        def = "{'lastModifiedDate': 1}",
+        partialFilter = "{'lastExecutedCommandStored': false}")
 public final class Wallet {
 
+    private static final int RECENT_COMMAND_IDS_LIMIT = 50;
+
     public static Wallet forOwner(String ownerId) {
         return new Wallet(ownerId);
     }
@@ -49,10 +59,23 @@ public final class Wallet {
     private String id;
     @Version
     private Integer version;
+    //Indexed for counting wallets of owner when owner's wallets counter is created
+    @Indexed
     private String ownerId;
     //Storing last command result for sending wallet event in case of failure
     private WalletCommandResult lastExecutedCommandResult;
     private Map<String, Fund> funds;
+    //Token of funds blocked under each lock id, maintained together with funds, so locks are found without scanning funds.
+    //Null for wallets stored before it was added, then it's rebuilt from funds on first use
+    @Getter(AccessLevel.NONE)
+    private Map<String, String> lockTokens;
+    //Window of recently executed commands ids, used for detecting redelivered commands without querying executed commands
+    private List<String> recentCommandIds;
+    //True as long as all commands executed on wallet are in the window, false for wallets created before window was added
+    private boolean recentCommandIdsComplete;
+    //False until executed command of last executed command is known to be stored,
+    //wallets with false are indexed, so missing executed commands can be found without joining collections
+    private boolean lastExecutedCommandStored;
     @CreatedDate
     private LocalDateTime createdDate;
     @LastModifiedDate
@@ -61,25 +84,63 @@ public final class Wallet {
     private Wallet(String ownerId) {
         this.ownerId = ownerId;
         this.funds = new HashMap<>();
+        this.lockTokens = new HashMap<>();
+        this.recentCommandIds = new ArrayList<>();
+        this.recentCommandIdsComplete = true;
+        this.lastExecutedCommandStored = true;
+    }
+
+    private Wallet(Wallet wallet) {
+        this.id = wallet.id;
+        this.version = wallet.version;
+        this.ownerId = wallet.ownerId;
+        this.lastExecutedCommandResult = wallet.lastExecutedCommandResult;
+        this.funds = new HashMap<>();
+        wallet.funds.forEach((token, fund) -> this.funds.put(token, fund.copy()));
+        this.lockTokens = Objects.isNull(wallet.lockTokens) ? null : new HashMap<>(wallet.lockTokens);
+        this.recentCommandIds = Objects.isNull(wallet.recentCommandIds) ? null : new ArrayList<>(wallet.recentCommandIds);
+        this.recentCommandIdsComplete = wallet.recentCommandIdsComplete;
+        this.lastExecutedCommandStored = wallet.lastExecutedCommandStored;
+        this.createdDate = wallet.createdDate;
+        this.lastModifiedDate = wallet.lastModifiedDate;
     }
 
+    //Detached copy of current state, e.g. cached wallet is not modified by commands executed on wallet taken from cache
+    public Wallet copy() {
+        return new Wallet(this);
+    }
+
+    //Executes command with funds of new tokens kept as BigDecimals and random UUID lock ids
     public WalletCommandResult execute(WalletCommand command, Clock clock) {
+        return execute(command, clock, token -> Optional.empty(), LockIdGenerator.RANDOM_UUID);
+    }
+
+    //Token scales are used only when fund of token is created, existing funds keep representation they were created with
+    public WalletCommandResult execute(WalletCommand command,
+                                       Clock clock,
+                                       Function<String, Optional<Integer>> tokenScales,
+                                       LockIdGenerator lockIdGenerator) {
         return getLastExecutedCommandId()
                 .filter(command.id()::equals)
                 .map(commandId -> lastExecutedCommandResult)
-                .orElseGet(() -> executeNewCommand(command, clock));
+                .orElseGet(() -> executeNewCommand(command, clock, tokenScales, lockIdGenerator));
     }
 
-    private WalletCommandResult executeNewCommand(WalletCommand command, Clock clock) {
-        log.info("Executing {} {} on wallet {}", command.getClass().getSimpleName(), command.id(), id);
+    private WalletCommandResult executeNewCommand(WalletCommand command,
+                                                  Clock clock,
+                                                  Function<String, Optional<Integer>> tokenScales,
+                                                  LockIdGenerator lockIdGenerator) {
+        if (log.isDebugEnabled()) {
+            log.debug("Executing {} {} on wallet {}", command.getClass().getSimpleName(), command.id(), id);
+        }
         lastExecutedCommandResult = switch (command) {
             case DepositFundsCommand depositFundsCommand -> {
-                depositFunds(depositFundsCommand.token(), depositFundsCommand.amount());
+                depositFunds(depositFundsCommand.token(), depositFundsCommand.amount(), tokenScales);
                 yield DepositFundsCommandResult.from(
                         depositFundsCommand, LocalDateTime.now(clock));
             }
             case BlockFundsCommand blockFundsCommand -> {
-                String lockId = blockFunds(blockFundsCommand.token(), blockFundsCommand.amount());
+                String lockId = blockFunds(blockFundsCommand.token(), blockFundsCommand.amount(), lockIdGenerator);
                 yield BlockFundsCommandResult.from(
                         blockFundsCommand, lockId, LocalDateTime.now(clock));
             }
@@ -94,9 +155,47 @@ public final class Wallet {
                         withdrawFundsCommand, result.getLeft(), result.getRight(), LocalDateTime.now(clock));
             }
         };
+        rememberCommandId(command.id());
+        lastExecutedCommandStored = false;
         return lastExecutedCommandResult;
     }
 
+    private void rememberCommandId(String commandId) {
+        if (Objects.isNull(recentCommandIds)) {
+            recentCommandIds = new ArrayList<>();
+        }
+        recentCommandIds.add(commandId);
+        if (recentCommandIds.size() > RECENT_COMMAND_IDS_LIMIT) {
+            recentCommandIds.removeFirst();
+            recentCommandIdsComplete = false;
+        }
+    }
+
+    //Empty when it can't be determined from the wallet, i.e. command could be executed before the window of recent commands
+    public Optional<Boolean> wasCommandExecuted(String commandId) {
+        if (Objects.nonNull(recentCommandIds) && recentCommandIds.contains(commandId)) {
+            return Optional.of(true);
+        } else if (recentCommandIdsComplete) {
+            return Optional.of(false);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    public void markLastExecutedCommandAsStored() {
+        this.lastExecutedCommandStored = true;
+    }
+
+    //Total blocked of funds is maintained by commands, it's verified when wallet is loaded,
+    //so wallets stored before it was maintained or with total not matching blocked funds are fixed
+    public void verifyTotalBlocked() {
+        funds.forEach((token, fund) -> {
+            if (!fund.recalculateTotalBlocked()) {
+                log.warn("Total blocked {} funds didn't match blocked funds in wallet {}, fixed", token, id);
+            }
+        });
+    }
+
     public Optional<WalletCommandResult> getLastExecutedCommandResult() {
         return Optional.ofNullable(lastExecutedCommandResult);
     }
@@ -105,58 +204,68 @@ public final class Wallet {
         return getLastExecutedCommandResult().map(WalletCommandResult::getId);
     }
 
-    private void depositFunds(String token, BigDecimal amount) {
-        log.info("Depositing {} {} to wallet {}", amount, token, id);
+    private void depositFunds(String token, BigDecimal amount, Function<String, Optional<Integer>> tokenScales) {
+        log.debug("Depositing {} {} to wallet {}", amount, token, id);
 
-        Fund fund = funds.getOrDefault(token, Fund.initial());
+        //New fund is added only after successful deposit, so wallet is not changed when deposit fails
+        Fund fund = Optional.ofNullable(funds.get(token)).orElseGet(() -> Fund.initial(tokenScales.apply(token)));
         fund.deposit(amount);
         funds.put(token, fund);
 
-        log.info("Deposited {} {} to wallet {}", amount, token, id);
+        log.debug("Deposited {} {} to wallet {}", amount, token, id);
     }
 
-    private String blockFunds(String token, BigDecimal amount) {
-        log.info("Blocking {} {} in wallet {}", amount, token, id);
+    private String blockFunds(String token, BigDecimal amount, LockIdGenerator lockIdGenerator) {
+        log.debug("Blocking {} {} in wallet {}", amount, token, id);
 
         Fund fund = funds.get(token);
         if (Objects.isNull(fund)) {
             throw new WalletCommandExecutionException("No %s funds to block".formatted(token));
         }
-        String lockId = fund.block(amount);
-        funds.put(token, fund);
+        String lockId = fund.block(amount, lockIdGenerator);
+        getLockTokens().put(lockId, token);
 
-        log.info("Blocked {} {} under lock {} in wallet {}", amount, token, lockId, id);
+        log.debug("Blocked {} {} under lock {} in wallet {}", amount, token, lockId, id);
         return lockId;
     }
 
     private Pair<String, BigDecimal> releaseFunds(String lockId) {
-        log.info("Releasing funds under lock {} in wallet {}", lockId, id);
+        log.debug("Releasing funds under lock {} in wallet {}", lockId, id);
 
-        Map.Entry<String, Fund> entry = getRequiredByLockId(lockId);
-        BigDecimal releasedAmount = entry.getValue().release(lockId);
-        funds.put(entry.getKey(), entry.getValue());
+        String token = getRequiredTokenByLockId(lockId);
+        BigDecimal releasedAmount = funds.get(token).release(lockId);
+        getLockTokens().remove(lockId);
 
-        log.info("Released {} {} from wallet {}", releasedAmount, entry.getKey(), id);
-        return Pair.of(entry.getKey(), releasedAmount);
+        log.debug("Released {} {} from wallet {}", releasedAmount, token, id);
+        return Pair.of(token, releasedAmount);
     }
 
     private Pair<String, BigDecimal> withdrawFunds(String lockId) {
-        log.info("Withdrawing funds under lock {} in wallet {}", lockId, id);
+        log.debug("Withdrawing funds under lock {} in wallet {}", lockId, id);
 
-        Map.Entry<String, Fund> entry = getRequiredByLockId(lockId);
-        BigDecimal withdrawnAmount = entry.getValue().withdraw(lockId);
-        funds.put(entry.getKey(), entry.getValue());
+        String token = getRequiredTokenByLockId(lockId);
+        BigDecimal withdrawnAmount = funds.get(token).withdraw(lockId);
+        getLockTokens().remove(lockId);
+
+        log.debug("Withdrawn {} {} from wallet {}", withdrawnAmount, token, id);
+        return Pair.of(token, withdrawnAmount);
+    }
 
-        log.info("Withdrawn {} {} from wallet {}", withdrawnAmount, entry.getKey(), id);
-        return Pair.of(entry.getKey(), withdrawnAmount);
+    private String getRequiredTokenByLockId(String lockId) {
+        String token = getLockTokens().get(lockId);
+        if (Objects.isNull(token) || !funds.containsKey(token)) {
+            throw new WalletCommandExecutionException("No funds found under lock " + lockId);
+        }
+        return token;
     }
 
-    private Map.Entry<String, Fund> getRequiredByLockId(String lockId) {
-        return funds.entrySet()
-                .stream()
-                .filter(entry -> entry.getValue().hasLock(lockId))
-                .findFirst()
-                .orElseThrow(() -> new WalletCommandExecutionException("No funds found under lock " + lockId));
+    private Map<String, String> getLockTokens() {
+        if (Objects.isNull(lockTokens)) {
+            lockTokens = new HashMap<>();
+            funds.forEach((token, fund) -> fund.getLockIds()
+                    .forEach(lockId -> lockTokens.put(lockId, token)));
+        }
+        return lockTokens;
     }
 
     @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -168,54 +277,202 @@ public final class Wallet {
 
         private static final int BLOCK_LIMIT = 50;
 
-        private static Fund initial() {
-            return Fund.builder().build();
+        private static Fund initial(Optional<Integer> scale) {
+            return scale
+                    .map(s -> Fund.builder()
+                            .scale(s)
+                            .availableUnits(0L)
+                            .blockedUnits(new HashMap<>())
+                            .totalBlockedUnits(0L)
+                            .build())
+                    .orElseGet(() -> Fund.builder()
+                            .available(BigDecimal.ZERO)
+                            .blocked(new HashMap<>())
+                            .totalBlocked(BigDecimal.ZERO)
+                            .build());
+        }
+
+        //Amounts of funds of tokens without scale, null for funds kept in minor units
+        @Getter(AccessLevel.NONE)
+        private BigDecimal available;
+        @Getter(AccessLevel.NONE)
+        private Map<String, BigDecimal> blocked;
+        //Sum of blocked funds, updated together with blocked, so balance is built without summing all locks
+        @Getter(AccessLevel.NONE)
+        private BigDecimal totalBlocked;
+        //Scale of token registered when fund was created, then amounts are kept as minor units (amount * 10^scale),
+        //so commands use long arithmetic instead of allocating BigDecimals and funds are stored as int64 instead of decimals.
+        //BigDecimals are created only for command results, events and REST responses
+        private Integer scale;
+        @Getter(AccessLevel.NONE)
+        private Long availableUnits;
+        @Getter(AccessLevel.NONE)
+        private Map<String, Long> blockedUnits;
+        @Getter(AccessLevel.NONE)
+        private Long totalBlockedUnits;
+
+        private Fund copy() {
+            return new Fund(available, copyOf(blocked), totalBlocked, scale, availableUnits, copyOf(blockedUnits), totalBlockedUnits);
         }
 
-        @Builder.Default
-        private BigDecimal available = BigDecimal.ZERO;
-        @Builder.Default
-        private Map<String, BigDecimal> blocked = new HashMap<>();
+        private static <T> Map<String, T> copyOf(Map<String, T> map) {
+            return Objects.isNull(map) ? null : new HashMap<>(map);
+        }
 
-        private boolean hasLock(String lockId) {
-            return blocked.containsKey(lockId);
+        private boolean isInMinorUnits() {
+            return Objects.nonNull(scale);
         }
 
         private void deposit(BigDecimal amount) {
-            available = available.add(amount);
+            if (isInMinorUnits()) {
+                availableUnits = addUnits(availableUnits, toUnits(amount));
+            } else {
+                available = available.add(amount);
+            }
+        }
+
+        private String block(BigDecimal amount, LockIdGenerator lockIdGenerator) {
+            String lockId;
+            if (isInMinorUnits()) {
+                long amountUnits = toUnits(amount);
+                verifyCanBlock(availableUnits >= amountUnits, blockedUnits.size());
+                lockId = lockIdGenerator.nextLockId();
+                blockedUnits.put(lockId, amountUnits);
+                availableUnits -= amountUnits;
+                totalBlockedUnits = addUnits(getTotalBlockedUnits(), amountUnits);
+            } else {
+                verifyCanBlock(available.compareTo(amount) >= 0, blocked.size());
+                lockId = lockIdGenerator.nextLockId();
+                blocked.put(lockId, amount);
+                available = available.subtract(amount);
+                totalBlocked = getTotalBlocked().add(amount);
+            }
+            return lockId;
         }
 
-        private String block(BigDecimal amount) {
-            if (available.compareTo(amount) < 0) {
+        private static void verifyCanBlock(boolean enoughFunds, int locksCount) {
+            if (!enoughFunds) {
                 throw new WalletCommandExecutionException("Not enough funds to block");
-            } else if (blocked.size() >= BLOCK_LIMIT) {
+            } else if (locksCount >= BLOCK_LIMIT) {
                 throw new WalletCommandExecutionException("Block limit exceeded");
             }
-            String lockId = UUID.randomUUID().toString();
-            blocked.put(lockId, amount);
-            available = available.subtract(amount);
-            return lockId;
         }
 
         private BigDecimal release(String lockId) {
+            if (isInMinorUnits()) {
+                Long releasedUnits = blockedUnits.remove(lockId);
+                if (Objects.isNull(releasedUnits)) {
+                    throw new WalletCommandExecutionException("No funds to release under lock: " + lockId);
+                }
+                availableUnits = addUnits(availableUnits, releasedUnits);
+                totalBlockedUnits = getTotalBlockedUnits() - releasedUnits;
+                return toAmount(releasedUnits);
+            }
             BigDecimal releasedAmount = blocked.remove(lockId);
             if (Objects.isNull(releasedAmount)) {
                 throw new WalletCommandExecutionException("No funds to release under lock: " + lockId);
             }
             available = available.add(releasedAmount);
+            totalBlocked = getTotalBlocked().subtract(releasedAmount);
             return releasedAmount;
         }
 
         private BigDecimal withdraw(String lockId) {
+            if (isInMinorUnits()) {
+                Long withdrawnUnits = blockedUnits.remove(lockId);
+                if (Objects.isNull(withdrawnUnits)) {
+                    throw new WalletCommandExecutionException("No funds to withdraw under lock: " + lockId);
+                }
+                totalBlockedUnits = getTotalBlockedUnits() - withdrawnUnits;
+                return toAmount(withdrawnUnits);
+            }
             BigDecimal withdrawnAmount = blocked.remove(lockId);
             if (Objects.isNull(withdrawnAmount)) {
                 throw new WalletCommandExecutionException("No funds to withdraw under lock: " + lockId);
             }
+            totalBlocked = getTotalBlocked().subtract(withdrawnAmount);
             return withdrawnAmount;
         }
 
+        //Amount with more decimal places than token's scale or out of long range is rejected, it's never rounded
+        private long toUnits(BigDecimal amount) {
+            try {
+                return amount.movePointRight(scale).longValueExact();
+            } catch (ArithmeticException e) {
+                throw new WalletCommandExecutionException(
+                        "Amount %s exceeds precision or range of token funds".formatted(amount.toPlainString()));
+            }
+        }
+
+        private static long addUnits(long units, long amountUnits) {
+            try {
+                return Math.addExact(units, amountUnits);
+            } catch (ArithmeticException e) {
+                throw new WalletCommandExecutionException("Funds amount out of range");
+            }
+        }
+
+        private BigDecimal toAmount(long units) {
+            return BigDecimal.valueOf(units, scale);
+        }
+
+        private Set<String> getLockIds() {
+            return isInMinorUnits() ? blockedUnits.keySet() : blocked.keySet();
+        }
+
+        public BigDecimal getAvailable() {
+            return isInMinorUnits() ? toAmount(availableUnits) : available;
+        }
+
+        public Map<String, BigDecimal> getBlocked() {
+            if (isInMinorUnits()) {
+                Map<String, BigDecimal> blockedAmounts = new HashMap<>();
+                blockedUnits.forEach((lockId, units) -> blockedAmounts.put(lockId, toAmount(units)));
+                return blockedAmounts;
+            }
+            return blocked;
+        }
+
+        //Falls back to summing blocked funds for funds not verified after loading, e.g. embedded in legacy wallet snapshots
         public BigDecimal getTotalBlocked() {
-            return blocked.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+            if (isInMinorUnits()) {
+                return toAmount(getTotalBlockedUnits());
+            }
+            return Objects.requireNonNullElseGet(totalBlocked, this::calculateTotalBlocked);
+        }
+
+        private long getTotalBlockedUnits() {
+            return Objects.requireNonNullElseGet(totalBlockedUnits, this::calculateTotalBlockedUnits);
+        }
+
+        //Returns false when stored total didn't match blocked funds, missing total is only calculated
+        private boolean recalculateTotalBlocked() {
+            if (isInMinorUnits()) {
+                long calculatedTotalBlockedUnits = calculateTotalBlockedUnits();
+                boolean matching = Objects.isNull(totalBlockedUnits) || totalBlockedUnits == calculatedTotalBlockedUnits;
+                totalBlockedUnits = calculatedTotalBlockedUnits;
+                return matching;
+            }
+            BigDecimal calculatedTotalBlocked = calculateTotalBlocked();
+            boolean matching = Objects.isNull(totalBlocked) || totalBlocked.compareTo(calculatedTotalBlocked) == 0;
+            totalBlocked = calculatedTotalBlocked;
+            return matching;
+        }
+
+        private BigDecimal calculateTotalBlocked() {
+            BigDecimal calculatedTotalBlocked = BigDecimal.ZERO;
+            for (BigDecimal amount : blocked.values()) {
+                calculatedTotalBlocked = calculatedTotalBlocked.add(amount);
+            }
+            return calculatedTotalBlocked;
+        }
+
+        private long calculateTotalBlockedUnits() {
+            long calculatedTotalBlockedUnits = 0;
+            for (long units : blockedUnits.values()) {
+                calculatedTotalBlockedUnits = addUnits(calculatedTotalBlockedUnits, units);
+            }
+            return calculatedTotalBlockedUnits;
         }
     }
 }
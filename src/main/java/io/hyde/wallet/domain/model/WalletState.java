@@ -0,0 +1,25 @@
+package io.hyde.wallet.domain.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+//Balance of wallet after executed command, only what's needed for wallet event is kept
+//instead of whole wallet with locks, recent commands ids and last command result
+public record WalletState(String id,
+                          String ownerId,
+                          List<FundState> funds) {
+
+    public static WalletState from(Wallet wallet) {
+        return new WalletState(
+                wallet.getId(),
+                wallet.getOwnerId(),
+                wallet.getFunds()
+                        .entrySet()
+                        .stream()
+                        .map(e -> new FundState(e.getKey(), e.getValue().getAvailable(), e.getValue().getTotalBlocked()))
+                        .toList());
+    }
+
+    public record FundState(String token, BigDecimal available, BigDecimal blocked) {
+    }
+}
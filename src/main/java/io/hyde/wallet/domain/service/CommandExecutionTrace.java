@@ -0,0 +1,79 @@
+package io.hyde.wallet.domain.service;
+
+import io.hyde.wallet.domain.model.command.WalletCommand;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Outcome and stage timings of commands processed together (single command or batch of wallet's commands),
+//collected along the processing and logged as one summary record per command
+final class CommandExecutionTrace {
+
+    static final String TOKEN_STAGE = "token";
+    static final String LOAD_STAGE = "load";
+    static final String LOOKUP_STAGE = "lookup";
+    static final String EXECUTE_STAGE = "execute";
+    static final String STORE_STAGE = "store";
+    static final String SEND_STAGE = "send";
+
+    enum Outcome {
+        EXECUTED, DUPLICATE, REJECTED, FAILED
+    }
+
+    private final List<WalletCommand> commands;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stagesNanos = new LinkedHashMap<>();
+    private final Map<String, Outcome> outcomes = new HashMap<>();
+    private long totalNanos;
+
+    CommandExecutionTrace(List<WalletCommand> commands) {
+        this.commands = commands;
+    }
+
+    //Time of stage executed more than once, e.g. after retry, is summed up
+    <T> Mono<T> timed(String stage, Mono<T> mono) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doOnSuccess(v -> record(stage, start))
+                    .doOnError(t -> record(stage, start));
+        });
+    }
+
+    //Some stages run in parallel (e.g. token check and lookup of batch)
+    synchronized void record(String stage, long startNanos) {
+        stagesNanos.merge(stage, System.nanoTime() - startNanos, Long::sum);
+    }
+
+    void outcome(String commandId, Outcome outcome) {
+        outcomes.put(commandId, outcome);
+    }
+
+    //Commands without outcome get the outcome of whole processing,
+    //failed processing overrides all outcomes since nothing of it was stored or sent
+    void finish(Outcome outcome) {
+        if (outcome == Outcome.FAILED) {
+            outcomes.clear();
+        }
+        commands.forEach(command -> outcomes.putIfAbsent(command.id(), outcome));
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    List<WalletCommand> getCommands() {
+        return commands;
+    }
+
+    Outcome getOutcome(String commandId) {
+        return outcomes.get(commandId);
+    }
+
+    synchronized Map<String, Long> getStagesNanos() {
+        return stagesNanos;
+    }
+
+    long getTotalNanos() {
+        return totalNanos;
+    }
+}
@@ -0,0 +1,56 @@
+package io.hyde.wallet.domain.service;
+
+import io.hyde.wallet.domain.model.command.WalletCommand;
+import io.hyde.wallet.domain.service.CommandExecutionTrace.Outcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+//Logs one structured record (key value pairs) per processed command instead of info logs of each processing step,
+//those are on debug level. Summaries of executed and duplicate commands can be sampled,
+//rejected and failed commands are always logged. Dedicated logger allows to change its level or route it separately
+@Component
+class CommandSummaryLogger {
+
+    static final String LOGGER_NAME = "io.hyde.wallet.commands";
+
+    private static final Logger log = LoggerFactory.getLogger(LOGGER_NAME);
+    private static final double NANOS_IN_MILLI = 1_000_000.0;
+
+    private final double sampleRate;
+
+    CommandSummaryLogger(@Value("${logging.command-summary.sample-rate}") double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    void log(CommandExecutionTrace trace) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        for (WalletCommand command : trace.getCommands()) {
+            Outcome outcome = trace.getOutcome(command.id());
+            if (isSampledOut(outcome)) {
+                continue;
+            }
+            LoggingEventBuilder summary = log.atInfo()
+                    .addKeyValue("commandId", command.id())
+                    .addKeyValue("commandType", command.getClass().getSimpleName())
+                    .addKeyValue("walletId", command.walletId())
+                    .addKeyValue("outcome", outcome)
+                    .addKeyValue("batchSize", trace.getCommands().size())
+                    .addKeyValue("totalMs", trace.getTotalNanos() / NANOS_IN_MILLI);
+            trace.getStagesNanos().forEach((stage, nanos) -> summary.addKeyValue(stage + "Ms", nanos / NANOS_IN_MILLI));
+            summary.log("Command processed");
+        }
+    }
+
+    private boolean isSampledOut(Outcome outcome) {
+        return (outcome == Outcome.EXECUTED || outcome == Outcome.DUPLICATE)
+                && sampleRate < 1.0
+                && ThreadLocalRandom.current().nextDouble() >= sampleRate;
+    }
+}
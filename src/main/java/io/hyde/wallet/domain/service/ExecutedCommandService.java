@@ -4,19 +4,43 @@ import io.hyde.wallet.application.ports.output.ExecutedCommandPort;
 import io.hyde.wallet.application.ports.output.WalletEventsPort;
 import io.hyde.wallet.domain.model.ExecutedCommand;
 import io.hyde.wallet.domain.model.Wallet;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ExecutedCommandService {
 
+    private final boolean relayEnabled;
+    private final boolean exactlyOnceEnabled;
     private final ExecutedCommandPort executedCommandPort;
     private final WalletEventsPort walletEventsPort;
 
+    public ExecutedCommandService(@Value("${jobs.executed-commands-relay.enabled}") boolean relayEnabled,
+                                  @Value("${wallets.exactly-once.enabled}") boolean exactlyOnceEnabled,
+                                  ExecutedCommandPort executedCommandPort,
+                                  WalletEventsPort walletEventsPort) {
+        if (relayEnabled && exactlyOnceEnabled) {
+            //Relay would send events of commands again outside of Kafka transactions, failing on startup instead
+            throw new IllegalStateException("Executed commands relay can't be enabled in exactly once mode");
+        }
+        this.relayEnabled = relayEnabled;
+        this.exactlyOnceEnabled = exactlyOnceEnabled;
+        this.executedCommandPort = executedCommandPort;
+        this.walletEventsPort = walletEventsPort;
+    }
+
     public Mono<Wallet> sendLastExecutedCommandIfMissing(Wallet wallet) {
         //Checking if last executed command was stored in case when previous command processing failed, and it was sent to DLT
         return wallet.getLastExecutedCommandId()
@@ -34,16 +58,114 @@ public class ExecutedCommandService {
                 .orElseGet(() -> Mono.just(wallet));
     }
 
+    public Mono<ExecutedCommandsLookup> lookup(Wallet wallet, Collection<String> commandIds) {
+        //Redelivered commands are mostly detected from the window of recent commands kept in wallet,
+        //last executed command is handled separately since it has to be stored if missing.
+        //Only commands which can't be determined from wallet are checked in executed commands with one query,
+        //not send commands are checked in parallel since both queries are independent
+        Optional<String> lastExecutedCommandId = wallet.getLastExecutedCommandId();
+        Set<String> executedCommandIds = new HashSet<>();
+        List<String> unknownCommandIds = new ArrayList<>();
+        commandIds.stream()
+                .filter(commandId -> !lastExecutedCommandId.map(commandId::equals).orElse(false))
+                .forEach(commandId -> wallet.wasCommandExecuted(commandId).ifPresentOrElse(
+                        executed -> {
+                            if (executed) {
+                                executedCommandIds.add(commandId);
+                            }
+                        },
+                        () -> unknownCommandIds.add(commandId)));
+        Optional<String> notVerifiedLastExecutedCommandId = lastExecutedCommandId
+                .filter(commandId -> !wallet.isLastExecutedCommandStored());
+        List<String> lookupCommandIds = Stream.concat(unknownCommandIds.stream(), notVerifiedLastExecutedCommandId.stream())
+                .distinct()
+                .toList();
+        return findStoredCommandIds(wallet, lookupCommandIds)
+                .zipWith(notSendCommandsExist(wallet))
+                .map(pair -> {
+                    Set<String> storedCommandIds = pair.getT1();
+                    executedCommandIds.addAll(storedCommandIds);
+                    return new ExecutedCommandsLookup(
+                            executedCommandIds,
+                            notVerifiedLastExecutedCommandId.map(storedCommandIds::contains).orElse(true),
+                            pair.getT2());
+                });
+    }
+
+    private Mono<Boolean> notSendCommandsExist(Wallet wallet) {
+        //Events are not sent inline when relay is enabled, so there is nothing to check.
+        //In exactly once mode events of previous commands were either committed or their commands are redelivered first,
+        //not send flag only lags behind commit
+        if (relayEnabled) {
+            return Mono.just(true);
+        }
+        return exactlyOnceEnabled ? Mono.just(false) : executedCommandPort.existsByWalletIdAndSend(wallet.getId(), false);
+    }
+
+    private Mono<Set<String>> findStoredCommandIds(Wallet wallet, List<String> commandIds) {
+        if (commandIds.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return executedCommandPort.findAllByWalletIdAndCommandIdIn(wallet.getId(), commandIds)
+                .map(ExecutedCommand::getCommandId)
+                .collect(Collectors.toSet());
+    }
+
+    public Mono<Boolean> sendLastExecutedCommandIfMissing(Wallet wallet, ExecutedCommandsLookup lookup) {
+        //Same as above but based on lookup result, returns whether events for wallet can be sent right away
+        if (lookup.lastExecutedCommandStored()) {
+            wallet.markLastExecutedCommandAsStored();
+            return Mono.just(!lookup.notSendCommandsExist());
+        }
+        return storeNotSendExecutedCommand(wallet)
+                .doOnNext(executedCommand -> wallet.markLastExecutedCommandAsStored())
+                .flatMap(executedCommand -> sendExecutedCommand(executedCommand, !lookup.notSendCommandsExist()));
+    }
+
     public Mono<Boolean> isCommandAlreadyProcessedForWallet(String commandId, String walletId){
         return executedCommandPort.existsByWalletIdAndCommandId(walletId, commandId);
     }
 
-    public Mono<Void> storeAndSendExecutedCommand(Wallet wallet) {
-        return storeNotSendExecutedCommand(wallet).flatMap(this::sendWalletUpdateEvent);
+    public Mono<ExecutedCommand> storeExecutedCommand(Wallet wallet) {
+        return storeNotSendExecutedCommand(wallet)
+                .doOnNext(executedCommand -> wallet.markLastExecutedCommandAsStored());
+    }
+
+    public Mono<List<ExecutedCommand>> storeNotSendExecutedCommands(List<ExecutedCommand> executedCommands) {
+        //Commands are new, so they are stored with single bulk insert
+        log.debug("Storing {} executed commands for wallet: {}", executedCommands.size(), executedCommands.getFirst().getWalletId());
+        return executedCommandPort.saveAll(executedCommands).collectList();
+    }
+
+    public Mono<Boolean> sendExecutedCommand(ExecutedCommand executedCommand, boolean canSendEvent) {
+        //Returns whether events of next commands of the wallet can be sent
+        if (canSendEvent) {
+            return sendAndMarkAsSend(executedCommand);
+        } else {
+            log.info("Not sending wallet update event for wallet: {}, other not send commands exists", executedCommand.getWalletId());
+            return Mono.just(false);
+        }
+    }
+
+    public Mono<Void> sendEventIfNotSend(Wallet wallet, String commandId) {
+        //In exactly once mode redelivered command was executed in aborted transaction, so its event has to be sent again.
+        //Otherwise events of not send commands are left for outbox jobs
+        if (!exactlyOnceEnabled) {
+            return Mono.empty();
+        }
+        return executedCommandPort.findAllByWalletIdAndCommandIdIn(wallet.getId(), List.of(commandId))
+                .filter(executedCommand -> !executedCommand.isSend())
+                .concatMap(walletEventsPort::sendEventFromExecutedCommand)
+                .then();
+    }
+
+    public Mono<Void> markAllAsSend(Collection<String> executedCommandIds) {
+        log.debug("Marking {} executed commands as send", executedCommandIds.size());
+        return executedCommandPort.markAllAsSendByIds(executedCommandIds).then();
     }
 
     private Mono<ExecutedCommand> storeNotSendExecutedCommand(Wallet wallet) {
-        log.info("Storing executed command for wallet: {} and last executed command: {}",
+        log.debug("Storing executed command for wallet: {} and last executed command: {}",
                 wallet.getId(), wallet.getLastExecutedCommandId());
         return executedCommandPort.save(ExecutedCommand.fromLastExecutedCommand(wallet));
     }
@@ -56,17 +178,31 @@ public class ExecutedCommandService {
                         log.info("Not sending wallet update event for wallet: {}, other not send commands exists", command.getWalletId());
                         return Mono.empty();
                     } else {
-                        return walletEventsPort.sendEventFromExecutedCommand(command)
-                                .then(markExecutedCommandAsSend(command))
-                                .onErrorComplete(); //ignoring errors since executed command will go through outbox pattern flow if sending failed
+                        return sendAndMarkAsSend(command).then();
                     }
                 });
     }
 
+    private Mono<Boolean> sendAndMarkAsSend(ExecutedCommand command) {
+        if (relayEnabled) {
+            //Relay sends events of all inserted commands, sending them here as well would duplicate events
+            log.debug("Not sending wallet update event for wallet: {}, left for relay", command.getWalletId());
+            return Mono.just(false);
+        }
+        if (exactlyOnceEnabled) {
+            //Event is committed together with consumed offset and marked as send after commit,
+            //failed send aborts the transaction, so command is redelivered
+            return walletEventsPort.sendEventFromExecutedCommand(command).thenReturn(true);
+        }
+        return walletEventsPort.sendEventFromExecutedCommand(command)
+                .then(markExecutedCommandAsSend(command))
+                .thenReturn(true)
+                .onErrorReturn(false); //ignoring errors since executed command will go through outbox pattern flow if sending failed
+    }
+
     private Mono<Void> markExecutedCommandAsSend(ExecutedCommand executedCommand) {
-        //this could be done using atomic update in mongo, yet I find this a cleaner way
-        log.info("Marking executed command as send: {}", executedCommand.getId());
-        executedCommand.markAsSend();
-        return executedCommandPort.save(executedCommand).then();
+        //Atomic update of send flag, so embedded wallet snapshot is not written again
+        log.debug("Marking executed command as send: {}", executedCommand.getId());
+        return executedCommandPort.markAsSendById(executedCommand.getId()).then();
     }
 }
@@ -0,0 +1,13 @@
+package io.hyde.wallet.domain.service;
+
+import java.util.Set;
+
+//Result of a single pass over executed commands of a wallet, done before commands execution
+public record ExecutedCommandsLookup(Set<String> executedCommandIds,
+                                     boolean lastExecutedCommandStored,
+                                     boolean notSendCommandsExist) {
+
+    public boolean isExecuted(String commandId) {
+        return executedCommandIds.contains(commandId);
+    }
+}
@@ -0,0 +1,63 @@
+package io.hyde.wallet.domain.service;
+
+import io.hyde.wallet.application.ports.output.OwnerWalletsPort;
+import io.hyde.wallet.application.ports.output.WalletPort;
+import io.hyde.wallet.domain.exception.ValidationException;
+import io.hyde.wallet.domain.model.OwnerWallets;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+//Wallets of owner are counted in owner's counter instead of counting wallets collection on each creation.
+//Counter is incremented only while it's below the limit with single conditional update,
+//so concurrent requests of the same owner can't exceed the limit
+@Slf4j
+@Service
+public class OwnerWalletsLimiter {
+
+    private final int walletsLimit;
+    private final OwnerWalletsPort ownerWalletsPort;
+    private final WalletPort walletPort;
+
+    public OwnerWalletsLimiter(@Value("${wallets.limit-per-owner}") Integer walletsLimit,
+                               OwnerWalletsPort ownerWalletsPort,
+                               WalletPort walletPort) {
+        this.walletsLimit = walletsLimit;
+        this.ownerWalletsPort = ownerWalletsPort;
+        this.walletPort = walletPort;
+    }
+
+    public Mono<Void> reserveWallet(String ownerId) {
+        return ownerWalletsPort.incrementWalletsCount(ownerId, walletsLimit)
+                .flatMap(updated -> {
+                    if (updated > 0) {
+                        return Mono.empty();
+                    }
+                    return ownerWalletsPort.existsById(ownerId)
+                            .flatMap(exists -> exists
+                                    ? Mono.error(new ValidationException("Wallets limit reached for owner: " + ownerId))
+                                    : initCounter(ownerId).then(Mono.defer(() -> reserveWallet(ownerId))));
+                });
+    }
+
+    public Mono<Void> releaseWallet(String ownerId) {
+        //Used when wallet couldn't be stored after it was reserved
+        return ownerWalletsPort.decrementWalletsCount(ownerId)
+                .doOnError(t -> log.error("Error while releasing wallet of owner: {}", ownerId, t))
+                .onErrorComplete()
+                .then();
+    }
+
+    private Mono<Void> initCounter(String ownerId) {
+        //Counter is created on first wallet creation of owner, starting from wallets created before counters were introduced.
+        //Counting uses owner id index and happens once per owner, when counter was already created by concurrent request it's kept
+        return walletPort.countByOwnerId(ownerId)
+                .flatMap(count -> ownerWalletsPort.insert(OwnerWallets.of(ownerId, count)))
+                .doOnNext(ownerWallets -> log.info("Wallets counter created for owner: {} with count: {}",
+                        ownerId, ownerWallets.getWalletsCount()))
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .then();
+    }
+}
@@ -0,0 +1,58 @@
+package io.hyde.wallet.domain.service;
+
+import io.hyde.wallet.application.ports.output.TokenPort;
+import io.hyde.wallet.domain.model.Token;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Tokens are created rarely, never removed and never changed, so known tokens are kept in memory
+//to avoid database round trip when validating token of each command or getting its scale
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRegistry {
+
+    private final TokenPort tokenPort;
+    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        refresh().subscribe();
+    }
+
+    public Mono<Boolean> exists(String name) {
+        if (tokens.containsKey(name)) {
+            return Mono.just(true);
+        }
+        //Token could be created by other instance since last refresh, so missing token is always checked in database
+        return tokenPort.findByName(name)
+                .doOnNext(this::register)
+                .hasElement();
+    }
+
+    //Token has to be registered first, which is done when command's token is validated
+    public Optional<Integer> getScale(String name) {
+        return Optional.ofNullable(tokens.get(name)).map(Token::getScale);
+    }
+
+    public void register(Token token) {
+        tokens.put(token.getName(), token);
+    }
+
+    public Mono<Void> refresh() {
+        return tokenPort.findAll()
+                .doOnNext(this::register)
+                .count()
+                .doOnNext(count -> log.info("Tokens registry refreshed, tokens count: {}", count))
+                .doOnError(t -> log.error("Error while refreshing tokens registry", t))
+                .onErrorComplete()
+                .then();
+    }
+}
@@ -20,6 +20,7 @@ import java.util.function.Predicate;
 class TokenService implements FindTokensUseCase, CreateTokenUseCase {
 
     private final TokenPort tokenPort;
+    private final TokenRegistry tokenRegistry;
 
     @Override
     public Flux<Token> findAllTokens() {
@@ -32,6 +33,9 @@ class TokenService implements FindTokensUseCase, CreateTokenUseCase {
                 .filter(Predicate.not(Boolean::booleanValue))
                 .switchIfEmpty(Mono.error(new ValidationException("Token with name %s already exists".formatted(request.name()))))
                 .then(tokenPort.save(request.toToken()))
-                .doOnSuccess(token -> log.info("Token created: {}", token.getId()));
+                .doOnSuccess(token -> {
+                    tokenRegistry.register(token);
+                    log.info("Token created: {}", token.getId());
+                });
     }
 }
@@ -4,59 +4,106 @@ import io.hyde.wallet.application.dto.CreateWalletRequestDto;
 import io.hyde.wallet.application.ports.input.CreateWalletUseCase;
 import io.hyde.wallet.application.ports.input.FindWalletsUseCase;
 import io.hyde.wallet.application.ports.input.ProcessWalletCommandUseCase;
-import io.hyde.wallet.application.ports.output.TokenPort;
+import io.hyde.wallet.application.ports.output.WalletCachePort;
 import io.hyde.wallet.application.ports.output.WalletEventsPort;
 import io.hyde.wallet.application.ports.output.WalletPort;
 import io.hyde.wallet.domain.exception.ApplicationException;
-import io.hyde.wallet.domain.exception.ValidationException;
 import io.hyde.wallet.domain.exception.WalletCommandProcessingException;
+import io.hyde.wallet.domain.model.ExecutedCommand;
+import io.hyde.wallet.domain.model.LockIdGenerator;
 import io.hyde.wallet.domain.model.Wallet;
 import io.hyde.wallet.domain.model.command.WalletCommand;
 import io.hyde.wallet.domain.model.command.WalletTokenRelatedCommand;
+import io.hyde.wallet.domain.service.CommandExecutionTrace.Outcome;
 import io.hyde.wallet.infrastructure.adapters.output.messaging.events.ErrorEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.retry.Retry;
 
 import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static io.hyde.wallet.domain.service.CommandExecutionTrace.EXECUTE_STAGE;
+import static io.hyde.wallet.domain.service.CommandExecutionTrace.LOAD_STAGE;
+import static io.hyde.wallet.domain.service.CommandExecutionTrace.LOOKUP_STAGE;
+import static io.hyde.wallet.domain.service.CommandExecutionTrace.SEND_STAGE;
+import static io.hyde.wallet.domain.service.CommandExecutionTrace.STORE_STAGE;
+import static io.hyde.wallet.domain.service.CommandExecutionTrace.TOKEN_STAGE;
 
 @Slf4j
 @Service
 class WalletService implements FindWalletsUseCase, CreateWalletUseCase, ProcessWalletCommandUseCase {
 
-    private final int walletsLimit;
+    private final boolean transactionsEnabled;
     private final Clock clock;
-    private final TokenPort tokenPort;
+    private final LockIdGenerator lockIdGenerator;
+    private final TokenRegistry tokenRegistry;
+    private final OwnerWalletsLimiter ownerWalletsLimiter;
     private final WalletPort walletPort;
+    private final WalletCachePort walletCachePort;
     private final WalletEventsPort walletEventsPort;
     private final ExecutedCommandService executedCommandService;
+    private final TransactionalOperator transactionalOperator;
+    private final CommandSummaryLogger commandSummaryLogger;
 
-    public WalletService(@Value("${wallets.limit-per-owner}") Integer walletsLimit,
+    public WalletService(@Value("${wallets.transactions.enabled}") boolean transactionsEnabled,
                          Clock clock,
-                         TokenPort tokenPort,
+                         LockIdGenerator lockIdGenerator,
+                         TokenRegistry tokenRegistry,
+                         OwnerWalletsLimiter ownerWalletsLimiter,
                          WalletPort walletPort,
+                         WalletCachePort walletCachePort,
                          WalletEventsPort walletEventsPort,
-                         ExecutedCommandService executedCommandService) {
-        this.walletsLimit = walletsLimit;
+                         ExecutedCommandService executedCommandService,
+                         TransactionalOperator transactionalOperator,
+                         CommandSummaryLogger commandSummaryLogger) {
+        this.transactionsEnabled = transactionsEnabled;
         this.clock = clock;
-        this.tokenPort = tokenPort;
+        this.lockIdGenerator = lockIdGenerator;
+        this.tokenRegistry = tokenRegistry;
+        this.ownerWalletsLimiter = ownerWalletsLimiter;
         this.walletPort = walletPort;
+        this.walletCachePort = walletCachePort;
         this.walletEventsPort = walletEventsPort;
         this.executedCommandService = executedCommandService;
+        this.transactionalOperator = transactionalOperator;
+        this.commandSummaryLogger = commandSummaryLogger;
     }
 
     @Override
     public Mono<Page<Wallet>> findAllWallets(Pageable pageable) {
+        //Counting all wallets is linear in collection size, so total is estimated from collection metadata
         return walletPort.findAllBy(pageable)
                 .collectList()
-                .zipWith(walletPort.count())
+                .zipWith(walletPort.estimatedCount())
                 .map(pair -> new PageImpl<>(pair.getT1(), pageable, pair.getT2()));
     }
 
+    @Override
+    public Flux<Wallet> findAllWallets(Optional<String> afterId, Limit limit) {
+        //Keyset pagination on id, next page starts right after last returned wallet, so deep pages don't skip documents
+        return afterId.map(id -> walletPort.findAllByIdGreaterThanOrderByIdAsc(id, limit))
+                .orElseGet(() -> walletPort.findAllByOrderByIdAsc(limit));
+    }
+
     @Override
     public Mono<Wallet> findWallet(String id) {
         return walletPort.findById(id);
@@ -64,35 +111,31 @@ class WalletService implements FindWalletsUseCase, CreateWalletUseCase, ProcessW
 
     @Override
     public Mono<Wallet> createWallet(CreateWalletRequestDto request) {
-        return walletPort.countByOwnerId(request.ownerId())
-                .filter(count -> count < walletsLimit)
-                .switchIfEmpty(Mono.error(new ValidationException("Wallets limit reached for owner: " + request.ownerId())))
-                .then(walletPort.save(request.toWallet()))
+        return ownerWalletsLimiter.reserveWallet(request.ownerId())
+                .then(Mono.defer(() -> walletPort.save(request.toWallet()))
+                        .onErrorResume(throwable -> ownerWalletsLimiter.releaseWallet(request.ownerId())
+                                .then(Mono.error(throwable))))
                 .doOnSuccess(wallet -> log.info("Wallet created: {}", wallet.getId()));
     }
 
     @Override
     public Mono<Void> process(WalletCommand command) {
-        return executedCommandService.isCommandAlreadyProcessedForWallet(command.id(), command.walletId())
-                .flatMap(executedCommandExists -> {
-                    if (executedCommandExists) {
-                        log.info("Command already executed: {}", command.id());
-                        return Mono.empty();
-                    } else {
-                        return processNotExecutedCommand(command);
-                    }
-                });
+        return traced(List.of(command), trace -> process(command, trace));
     }
 
-    private Mono<Void> processNotExecutedCommand(WalletCommand command) {
-        return applyNotExecutedCommand(command)
-                .doOnSuccess(v -> log.info("Command executed: {}", command.id()))
+    private Mono<Void> process(WalletCommand command, CommandExecutionTrace trace) {
+        if (log.isDebugEnabled()) {
+            log.debug("Processing {} {}", command.getClass().getSimpleName(), command.id());
+        }
+        return applyCommand(command, trace)
+                .retryWhen(retryOnStaleWallet())
                 .onErrorResume(throwable ->
                         switch (throwable) {
                             case ApplicationException applicationException -> {
                                 log.warn("Application exception occurred while processing command: {}, error: {}",
                                         command.id(), applicationException.getMessage());
-                                yield walletEventsPort.sendEvent(ErrorEvent.from(command, applicationException));
+                                trace.outcome(command.id(), Outcome.REJECTED);
+                                yield trace.timed(SEND_STAGE, walletEventsPort.sendEvent(ErrorEvent.from(command, applicationException)));
                             }
                             default -> {
                                 log.error("Error occurred while processing command: {}", command.id(), throwable);
@@ -101,49 +144,268 @@ class WalletService implements FindWalletsUseCase, CreateWalletUseCase, ProcessW
                         });
     }
 
-    private Mono<Void> applyNotExecutedCommand(WalletCommand command) {
-        log.info("Processing {} {}", command.getClass().getSimpleName(), command.id());
+    @Override
+    public Mono<Void> markExecutedCommandsAsSend(Collection<String> executedCommandIds) {
+        return executedCommandService.markAllAsSend(executedCommandIds);
+    }
+
+    private Mono<Void> traced(List<WalletCommand> commands, Function<CommandExecutionTrace, Mono<Void>> processing) {
+        //Each processing attempt (e.g. after listener retry) gets its own trace and summary
+        return Mono.defer(() -> {
+            CommandExecutionTrace trace = new CommandExecutionTrace(commands);
+            return processing.apply(trace)
+                    .doFinally(signal -> {
+                        trace.finish(signal == SignalType.ON_COMPLETE ? Outcome.EXECUTED : Outcome.FAILED);
+                        commandSummaryLogger.log(trace);
+                    });
+        });
+    }
+
+    private Mono<Void> applyCommand(WalletCommand command, CommandExecutionTrace trace) {
+        //Token is validated from in memory registry, so it is checked first without any database round trip
         return switch (command) {
             case WalletTokenRelatedCommand walletTokenRelatedCommand ->
-                    validateToken(walletTokenRelatedCommand.token()).then(executeCommand(command));
-            default -> executeCommand(command);
+                    trace.timed(TOKEN_STAGE, validateToken(walletTokenRelatedCommand.token()))
+                            .then(executeCommand(command, trace));
+            default -> executeCommand(command, trace);
         };
     }
 
+    @Override
+    public Mono<Void> processBatch(List<WalletCommand> commands) {
+        if (commands.size() == 1) {
+            return process(commands.getFirst());
+        }
+        return traced(commands, trace -> processBatch(commands, trace));
+    }
+
+    private Mono<Void> processBatch(List<WalletCommand> commands, CommandExecutionTrace trace) {
+        String walletId = commands.getFirst().walletId();
+        log.debug("Processing batch of {} commands for wallet {}", commands.size(), walletId);
+        return trace.timed(LOAD_STAGE, loadWallet(walletId))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(wallet -> wallet
+                        .map(w -> executeBatch(w, commands, trace))
+                        //Falling back to processing one by one, so error event is sent for each command
+                        .orElseGet(() -> Flux.fromIterable(commands).concatMap(command -> process(command, trace)).then()))
+                .retryWhen(retryOnStaleWallet())
+                .doOnSuccess(v -> log.debug("Batch of {} commands executed for wallet {}", commands.size(), walletId))
+                .doOnError(throwable -> log.error("Error occurred while processing batch of commands for wallet: {}", walletId, throwable));
+    }
+
+    private Mono<Void> executeBatch(Wallet wallet, List<WalletCommand> commands, CommandExecutionTrace trace) {
+        List<String> commandIds = commands.stream().map(WalletCommand::id).toList();
+        return trace.timed(TOKEN_STAGE, findNotExistingTokens(commands))
+                .zipWith(trace.timed(LOOKUP_STAGE, executedCommandService.lookup(wallet, commandIds)))
+                .flatMap(pair -> executedCommandService.sendLastExecutedCommandIfMissing(wallet, pair.getT2())
+                        .flatMap(canSendEvents -> {
+                            List<BatchCommandResult> results = executeBatchInMemory(wallet, commands, pair.getT1(), pair.getT2(), trace);
+                            return trace.timed(STORE_STAGE, storeBatch(wallet, results))
+                                    .then(trace.timed(SEND_STAGE, sendBatchEvents(results, canSendEvents)));
+                        }));
+    }
+
+    private Mono<Set<String>> findNotExistingTokens(List<WalletCommand> commands) {
+        return Flux.fromIterable(commands)
+                .ofType(WalletTokenRelatedCommand.class)
+                .map(WalletTokenRelatedCommand::token)
+                .distinct()
+                .filterWhen(token -> tokenRegistry.exists(token).map(exists -> !exists))
+                .collect(Collectors.toSet());
+    }
+
+    private List<BatchCommandResult> executeBatchInMemory(Wallet wallet,
+                                                          List<WalletCommand> commands,
+                                                          Set<String> notExistingTokens,
+                                                          ExecutedCommandsLookup lookup,
+                                                          CommandExecutionTrace trace) {
+        //Wallet state is not changed when command execution fails, so following commands can be executed on the same instance
+        long start = System.nanoTime();
+        Set<String> executedCommandIds = new HashSet<>(lookup.executedCommandIds());
+        wallet.getLastExecutedCommandId().ifPresent(executedCommandIds::add);
+        List<BatchCommandResult> results = new ArrayList<>();
+        for (WalletCommand command : commands) {
+            if (!executedCommandIds.add(command.id())) {
+                log.debug("Command already executed: {}", command.id());
+                trace.outcome(command.id(), Outcome.DUPLICATE);
+            } else if (command instanceof WalletTokenRelatedCommand tokenCommand && notExistingTokens.contains(tokenCommand.token())) {
+                results.add(new BatchCommandResult.Failed(
+                        command, new WalletCommandProcessingException("Token not found: " + tokenCommand.token())));
+                trace.outcome(command.id(), Outcome.REJECTED);
+            } else {
+                try {
+                    wallet.execute(command, clock, tokenRegistry::getScale, lockIdGenerator);
+                    //Wallet state of executed command is detached, so it's not changed by following commands of the batch
+                    results.add(new BatchCommandResult.Executed(ExecutedCommand.fromLastExecutedCommand(wallet)));
+                    trace.outcome(command.id(), Outcome.EXECUTED);
+                } catch (ApplicationException applicationException) {
+                    results.add(new BatchCommandResult.Failed(command, applicationException));
+                    trace.outcome(command.id(), Outcome.REJECTED);
+                }
+            }
+        }
+        trace.record(EXECUTE_STAGE, start);
+        return results;
+    }
+
+    private Mono<Void> storeBatch(Wallet wallet, List<BatchCommandResult> results) {
+        List<ExecutedCommand> executedCommands = results.stream()
+                .filter(BatchCommandResult.Executed.class::isInstance)
+                .map(result -> ((BatchCommandResult.Executed) result).executedCommand())
+                .toList();
+        if (executedCommands.isEmpty()) {
+            return Mono.empty();
+        }
+        //Wallet keeps only last executed command, so other commands of the batch can't be recovered
+        //if wallet is stored without them, hence both writes are done in one transaction
+        wallet.markLastExecutedCommandAsStored();
+        return walletPort.save(wallet)
+                .then(executedCommandService.storeNotSendExecutedCommands(executedCommands))
+                .as(transactionalOperator::transactional)
+                //Wallet is cached only after transaction is committed
+                .doOnSuccess(v -> walletCachePort.put(wallet))
+                .doOnError(throwable -> walletCachePort.invalidate(wallet.getId()))
+                .then();
+    }
+
+    private Mono<Void> sendBatchEvents(List<BatchCommandResult> results, boolean canSendEvents) {
+        //Events are sent one by one in commands order, once any wallet event is not sent the rest is left for outbox job
+        AtomicBoolean canSendWalletEvents = new AtomicBoolean(canSendEvents);
+        return Flux.fromIterable(results)
+                .concatMap(result -> switch (result) {
+                    case BatchCommandResult.Executed executed ->
+                            executedCommandService.sendExecutedCommand(executed.executedCommand(), canSendWalletEvents.get())
+                                    .doOnNext(canSendWalletEvents::set)
+                                    .then();
+                    case BatchCommandResult.Failed failed -> {
+                        log.warn("Application exception occurred while processing command: {}, error: {}",
+                                failed.command().id(), failed.exception().getMessage());
+                        yield walletEventsPort.sendEvent(ErrorEvent.from(failed.command(), failed.exception()));
+                    }
+                })
+                .then();
+    }
+
     private Mono<Void> validateToken(String token) {
-        return tokenPort.existsByName(token)
+        return tokenRegistry.exists(token)
                 .filter(Boolean::booleanValue)
                 .switchIfEmpty(Mono.error(new WalletCommandProcessingException("Token not found: " + token)))
                 .then();
     }
 
-    private Mono<Void> executeCommand(WalletCommand command) {
-        return getWallet(command)
-                .flatMap(executedCommandService::sendLastExecutedCommandIfMissing)
-                .filter(wallet -> isCommandNotSameAsLastExecuted(wallet, command))
-                .flatMap(wallet -> executeCommandAndStoreWallet(wallet, command))
-                .flatMap(executedCommandService::storeAndSendExecutedCommand);
+    private Mono<Void> executeCommand(WalletCommand command, CommandExecutionTrace trace) {
+        return trace.timed(LOAD_STAGE, getWallet(command))
+                .flatMap(wallet -> trace.timed(LOOKUP_STAGE, executedCommandService.lookup(wallet, List.of(command.id())))
+                        .flatMap(lookup -> {
+                            if (lookup.isExecuted(command.id())) {
+                                log.debug("Command already executed: {}", command.id());
+                                trace.outcome(command.id(), Outcome.DUPLICATE);
+                                return trace.timed(SEND_STAGE, executedCommandService.sendEventIfNotSend(wallet, command.id()));
+                            } else {
+                                return executeNotExecutedCommand(wallet, command, lookup, trace);
+                            }
+                        }));
+    }
+
+    private Mono<Void> executeNotExecutedCommand(Wallet wallet,
+                                                 WalletCommand command,
+                                                 ExecutedCommandsLookup lookup,
+                                                 CommandExecutionTrace trace) {
+        return executedCommandService.sendLastExecutedCommandIfMissing(wallet, lookup)
+                .flatMap(canSendEvent -> {
+                    if (isCommandSameAsLastExecuted(wallet, command, trace)) {
+                        //Executed command which was already stored could be executed in aborted events transaction
+                        return lookup.lastExecutedCommandStored()
+                                ? trace.timed(SEND_STAGE, executedCommandService.sendEventIfNotSend(wallet, command.id()))
+                                : Mono.<Void>empty();
+                    }
+                    //Not send commands were already checked before execution, so there is no need to query them again
+                    return executeCommandAndStoreWalletWithExecutedCommand(wallet, command, trace)
+                            .flatMap(executedCommand -> trace.timed(SEND_STAGE,
+                                    executedCommandService.sendExecutedCommand(executedCommand, canSendEvent)))
+                            .doOnSuccess(v -> log.debug("Command executed: {}", command.id()))
+                            .then();
+                })
+                .then();
     }
 
-    private boolean isCommandNotSameAsLastExecuted(Wallet wallet, WalletCommand command) {
+    private boolean isCommandSameAsLastExecuted(Wallet wallet, WalletCommand command, CommandExecutionTrace trace) {
         boolean areCommandsIdsEqual = wallet.getLastExecutedCommandId()
                 .map(command.id()::equals)
                 .orElse(false);
         if (areCommandsIdsEqual) {
-            log.info("Command {} is same as last executed in wallet: {}, ignoring", command.id(), wallet.getId());
-            return false;
-        } else {
-            return true;
+            log.debug("Command {} is same as last executed in wallet: {}, ignoring", command.id(), wallet.getId());
+            trace.outcome(command.id(), Outcome.DUPLICATE);
         }
+        return areCommandsIdsEqual;
     }
 
     private Mono<Wallet> getWallet(WalletCommand command) {
-        return findWallet(command.walletId())
+        return loadWallet(command.walletId())
                 .switchIfEmpty(Mono.error(new WalletCommandProcessingException("Wallet not found: " + command.walletId())));
     }
 
-    private Mono<Wallet> executeCommandAndStoreWallet(Wallet wallet, WalletCommand command) {
-        wallet.execute(command, clock);
-        return walletPort.save(wallet);
+    private Mono<Wallet> loadWallet(String walletId) {
+        //Deferred, so wallet is reloaded from database when processing is retried after invalidation
+        return Mono.defer(() -> walletCachePort.get(walletId)
+                .map(Mono::just)
+                .orElseGet(() -> walletPort.findById(walletId).doOnNext(walletCachePort::put)));
+    }
+
+    private Mono<ExecutedCommand> executeCommandAndStoreWalletWithExecutedCommand(Wallet wallet,
+                                                                                 WalletCommand command,
+                                                                                 CommandExecutionTrace trace) {
+        long start = System.nanoTime();
+        wallet.execute(command, clock, tokenRegistry::getScale, lockIdGenerator);
+        trace.record(EXECUTE_STAGE, start);
+        Mono<ExecutedCommand> executedCommand;
+        if (transactionsEnabled) {
+            //Wallet and executed command are committed together, so last executed command can't be missing
+            wallet.markLastExecutedCommandAsStored();
+            executedCommand = storeWallet(wallet)
+                    .flatMap(executedCommandService::storeExecutedCommand)
+                    .as(transactionalOperator::transactional);
+        } else {
+            executedCommand = storeWallet(wallet)
+                    .flatMap(executedCommandService::storeExecutedCommand)
+                    .flatMap(stored -> markLastExecutedCommandAsStored(wallet).thenReturn(stored));
+        }
+        return trace.timed(STORE_STAGE, executedCommand)
+                //Caching information that executed command is stored, so it's not checked for next command
+                .doOnNext(stored -> walletCachePort.put(wallet))
+                .doOnError(throwable -> walletCachePort.invalidate(wallet.getId()));
+    }
+
+    private Mono<Void> markLastExecutedCommandAsStored(Wallet wallet) {
+        //Wallet is saved as not having stored last executed command, marker is cleared once executed command is inserted,
+        //so only wallets whose insert failed stay in the index of ProcessMissingExecutedCommandsJob.
+        //Marking doesn't change version, if it fails the job verifies the wallet later
+        return walletPort.markLastExecutedCommandAsStored(wallet.getId(), wallet.getVersion())
+                .doOnError(throwable -> log.warn("Error while marking last executed command as stored for wallet: {}",
+                        wallet.getId(), throwable))
+                .onErrorComplete()
+                .then();
+    }
+
+    private Mono<Wallet> storeWallet(Wallet wallet) {
+        return walletPort.save(wallet)
+                .doOnNext(walletCachePort::put)
+                .doOnError(throwable -> walletCachePort.invalidate(wallet.getId()));
+    }
+
+    private Retry retryOnStaleWallet() {
+        //Cached wallet could be modified by other instance (e.g. after partitions rebalance),
+        //it's invalidated on failed save, so single immediate retry reloads it from database
+        return Retry.max(1).filter(OptimisticLockingFailureException.class::isInstance);
+    }
+
+    private sealed interface BatchCommandResult {
+
+        record Executed(ExecutedCommand executedCommand) implements BatchCommandResult {
+        }
+
+        record Failed(WalletCommand command, ApplicationException exception) implements BatchCommandResult {
+        }
     }
 }
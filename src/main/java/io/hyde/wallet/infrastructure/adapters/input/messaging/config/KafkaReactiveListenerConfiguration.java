@@ -3,7 +3,15 @@ package io.hyde.wallet.infrastructure.adapters.input.messaging.config;
 import io.hyde.wallet.application.ports.input.ProcessWalletCommandUseCase;
 import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WalletCommandEvent;
 import io.hyde.wallet.infrastructure.adapters.input.messaging.listener.KafkaWalletCommandEventsReactiveListener;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.listener.KafkaWalletCommandEventsTransactionalListener;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.listener.KafkaWalletCommandEventsTransactionalListener.TransactionalReceiver;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.listener.WalletCommandPartitionsHook;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent;
 import io.hyde.wallet.utils.validation.AnnotationProcessingValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
@@ -13,41 +21,149 @@ import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate;
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
 import reactor.core.publisher.Flux;
 import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.receiver.ReceiverPartition;
 import reactor.kafka.receiver.ReceiverRecord;
+import reactor.kafka.sender.KafkaSender;
 import reactor.kafka.sender.SenderOptions;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
+@Slf4j
 @Configuration
 class KafkaReactiveListenerConfiguration {
 
     @Bean
+    @ConditionalOnProperty(name = "wallets.exactly-once.enabled", havingValue = "false", matchIfMissing = true)
     KafkaWalletCommandEventsReactiveListener kafkaWalletCommandEventsReactiveListener(
             KafkaProperties kafkaProperties,
             @Value("${spring.kafka.consumer.topics.wallet-commands.name}") String walletCommandsTopic,
             @Value("${spring.kafka.consumer.topics.wallet-commands.processing-timeout}") Duration processingTimeout,
             @Value("${spring.kafka.consumer.topics.wallet-commands.retry-count}") int retryCount,
             @Value("${spring.kafka.consumer.topics.wallet-commands.retry-delay}") Duration retryDelay,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.non-blocking-retry}") boolean nonBlockingRetry,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.receivers}") int receivers,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.concurrency}") int concurrency,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.max-deferred-commits}") int maxDeferredCommits,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.batch-size}") int batchSize,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.batch-timeout}") Duration batchTimeout,
+            @Value("${wallets.transactions.enabled}") boolean transactionsEnabled,
             AnnotationProcessingValidator annotationProcessingValidator,
-            ProcessWalletCommandUseCase processWalletCommandUseCase) {
-        ReceiverOptions<String, WalletCommandEvent> receiverOptions =
-                ReceiverOptions.<String, WalletCommandEvent>create(kafkaProperties.buildConsumerProperties())
-                        .subscription(Collections.singletonList(walletCommandsTopic));
-        Flux<ReceiverRecord<String, WalletCommandEvent>> records =
-                new ReactiveKafkaConsumerTemplate<>(receiverOptions).receive();
+            ProcessWalletCommandUseCase processWalletCommandUseCase,
+            List<WalletCommandPartitionsHook> partitionsHooks) {
+        if (batchSize > 1 && !transactionsEnabled) {
+            //Wallet keeps only last executed command, so batch is stored in one MongoDB transaction (replica set only),
+            //without it executed commands of the batch could be lost, failing on startup instead
+            throw new IllegalStateException("Batched execution of wallet commands requires wallets transactions to be enabled");
+        }
+        //Listener is notified as well, so records parked for retry are dropped when their partition is revoked.
+        //Hooks are called only once receivers are subscribed, when the listener is already added
+        List<WalletCommandPartitionsHook> hooks = new ArrayList<>(partitionsHooks);
+        //Each receiver is separate consumer of the group with its own poll loop and processing lanes,
+        //so partitions assigned to the instance are consumed in parallel
+        List<Flux<ReceiverRecord<String, WalletCommandEvent>>> records = IntStream.range(0, receivers)
+                .mapToObj(receiver -> createReceiverOptions(kafkaProperties, walletCommandsTopic, receiver, hooks))
+                //Records are acknowledged out of order when processed concurrently or retried in background,
+                //deferred commits make sure offsets are still committed in order per partition
+                .map(receiverOptions -> concurrency > 1 || nonBlockingRetry
+                        ? receiverOptions.maxDeferredCommits(maxDeferredCommits)
+                        : receiverOptions)
+                .map(receiverOptions -> new ReactiveKafkaConsumerTemplate<>(receiverOptions).receive())
+                .toList();
 
         ReactiveKafkaProducerTemplate<String, WalletCommandEvent> dltProducer =
                 new ReactiveKafkaProducerTemplate<>(SenderOptions.create(kafkaProperties.buildProducerProperties()));
 
-        return new KafkaWalletCommandEventsReactiveListener(
+        KafkaWalletCommandEventsReactiveListener listener = new KafkaWalletCommandEventsReactiveListener(
                 processingTimeout,
                 retryCount,
                 retryDelay,
+                nonBlockingRetry,
+                concurrency,
+                batchSize,
+                batchTimeout,
                 records,
                 annotationProcessingValidator,
                 processWalletCommandUseCase,
                 walletCommandsTopic + "-dlt",
                 dltProducer);
+        hooks.add(listener);
+        return listener;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "wallets.exactly-once.enabled", havingValue = "true")
+    KafkaWalletCommandEventsTransactionalListener kafkaWalletCommandEventsTransactionalListener(
+            KafkaProperties kafkaProperties,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.name}") String walletCommandsTopic,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.processing-timeout}") Duration processingTimeout,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.retry-count}") int retryCount,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.retry-delay}") Duration retryDelay,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.receivers}") int receivers,
+            @Value("${spring.kafka.consumer.topics.wallet-commands.concurrency}") int concurrency,
+            @Value("${wallets.exactly-once.transactional-id-prefix}") String transactionalIdPrefix,
+            AnnotationProcessingValidator annotationProcessingValidator,
+            ProcessWalletCommandUseCase processWalletCommandUseCase,
+            List<WalletCommandPartitionsHook> partitionsHooks) {
+        //Offsets are committed through transactional producer of the receiver, so neither acknowledgements
+        //nor deferred commits are used. Broker fences zombie producers by consumer group metadata (KIP-447),
+        //transactional id only has to be unique and stable per receiver of the instance
+        List<TransactionalReceiver> transactionalReceivers = IntStream.range(0, receivers)
+                .mapToObj(receiver -> {
+                    ReceiverOptions<String, WalletCommandEvent> receiverOptions =
+                            createReceiverOptions(kafkaProperties, walletCommandsTopic, receiver, partitionsHooks)
+                                    //Records of aborted transactions of upstream producers are skipped
+                                    .consumerProperty(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+                    Map<String, Object> producerProperties = new HashMap<>(kafkaProperties.buildProducerProperties());
+                    producerProperties.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalIdPrefix + receiver);
+                    KafkaSender<String, WalletEvent> sender = KafkaSender.create(SenderOptions.create(producerProperties));
+                    return new TransactionalReceiver(new ReactiveKafkaConsumerTemplate<>(receiverOptions), sender);
+                })
+                .toList();
+
+        ReactiveKafkaProducerTemplate<String, WalletCommandEvent> dltProducer =
+                new ReactiveKafkaProducerTemplate<>(SenderOptions.create(kafkaProperties.buildProducerProperties()));
+
+        return new KafkaWalletCommandEventsTransactionalListener(
+                processingTimeout,
+                retryCount,
+                retryDelay,
+                concurrency,
+                transactionalReceivers,
+                annotationProcessingValidator,
+                processWalletCommandUseCase,
+                walletCommandsTopic + "-dlt",
+                dltProducer);
+    }
+
+    private ReceiverOptions<String, WalletCommandEvent> createReceiverOptions(KafkaProperties kafkaProperties,
+                                                                              String walletCommandsTopic,
+                                                                              int receiver,
+                                                                              List<WalletCommandPartitionsHook> partitionsHooks) {
+        Map<String, Object> consumerProperties = new HashMap<>(kafkaProperties.buildConsumerProperties());
+        //Client ids have to be unique within instance (e.g. for consumer metrics)
+        consumerProperties.computeIfPresent(ConsumerConfig.CLIENT_ID_CONFIG, (key, clientId) -> clientId + "-" + receiver);
+        return ReceiverOptions.<String, WalletCommandEvent>create(consumerProperties)
+                .subscription(Collections.singletonList(walletCommandsTopic))
+                .addAssignListener(partitions -> {
+                    Collection<TopicPartition> topicPartitions = toTopicPartitions(partitions);
+                    log.info("Partitions assigned to receiver {}: {}", receiver, topicPartitions);
+                    partitionsHooks.forEach(hook -> hook.onAssigned(topicPartitions));
+                })
+                .addRevokeListener(partitions -> {
+                    Collection<TopicPartition> topicPartitions = toTopicPartitions(partitions);
+                    log.info("Partitions revoked from receiver {}: {}", receiver, topicPartitions);
+                    partitionsHooks.forEach(hook -> hook.onRevoked(topicPartitions));
+                });
+    }
+
+    private Collection<TopicPartition> toTopicPartitions(Collection<ReceiverPartition> partitions) {
+        return partitions.stream().map(ReceiverPartition::topicPartition).toList();
     }
 }
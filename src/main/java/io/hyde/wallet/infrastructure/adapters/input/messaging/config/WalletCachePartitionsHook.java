@@ -0,0 +1,26 @@
+package io.hyde.wallet.infrastructure.adapters.input.messaging.config;
+
+import io.hyde.wallet.application.ports.output.WalletCachePort;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.listener.WalletCommandPartitionsHook;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+@Component
+@RequiredArgsConstructor
+class WalletCachePartitionsHook implements WalletCommandPartitionsHook {
+
+    private final WalletCachePort walletCachePort;
+
+    @Override
+    public void onRevoked(Collection<TopicPartition> partitions) {
+        //Wallets of revoked partitions can be modified by other instance from now on,
+        //partition of wallet is not tracked, so whole cache is cleared.
+        //With cooperative rebalancing only partitions which really moved are revoked, so it happens rarely
+        if (!partitions.isEmpty()) {
+            walletCachePort.invalidateAll();
+        }
+    }
+}
@@ -1,46 +1,265 @@
 package io.hyde.wallet.infrastructure.adapters.input.messaging.listener;
 
 import io.hyde.wallet.application.ports.input.ProcessWalletCommandUseCase;
+import io.hyde.wallet.domain.model.command.WalletCommand;
 import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WalletCommandEvent;
 import io.hyde.wallet.infrastructure.adapters.input.messaging.events.mapper.WalletCommandEventMapper;
 import io.hyde.wallet.utils.validation.AnnotationProcessingValidator;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
 import org.springframework.validation.BindingResult;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.kafka.receiver.ReceiverRecord;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @RequiredArgsConstructor
-public class KafkaWalletCommandEventsReactiveListener {
+public class KafkaWalletCommandEventsReactiveListener implements WalletCommandPartitionsHook {
 
     private final Duration processingTimeout;
     private final int retryCount;
     private final Duration retryDelay;
-    private final Flux<ReceiverRecord<String, WalletCommandEvent>> recordsProducer;
+    private final boolean nonBlockingRetry;
+    private final int concurrency;
+    private final int batchSize;
+    private final Duration batchTimeout;
+    //Records of each receiver (consumer of the group) are processed independently
+    private final List<Flux<ReceiverRecord<String, WalletCommandEvent>>> receivers;
     private final AnnotationProcessingValidator annotationProcessingValidator;
     private final ProcessWalletCommandUseCase processWalletCommandUseCase;
     private final String walletCommandsDeadLetterTopic;
     private final ReactiveKafkaProducerTemplate<String, WalletCommandEvent> dltProducer;
+    //Records of wallets which failed processing, retried in background in order of consumption
+    private final Map<String, ParkedRecords> parkedRecords = new ConcurrentHashMap<>();
 
     @PostConstruct
     void receive() {
+        receivers.forEach(recordsProducer -> {
+            if (nonBlockingRetry || concurrency > 1 || batchSize > 1) {
+                receiveInLanes(recordsProducer);
+            } else {
+                receiveSequentially(recordsProducer);
+            }
+        });
+    }
+
+    private void receiveSequentially(Flux<ReceiverRecord<String, WalletCommandEvent>> recordsProducer) {
         recordsProducer.retryWhen(Retry.indefinitely())
                 .doOnNext(record -> {
                     //since we're consuming flux of events each event has to be timeout for processing before next event is consumed
                     //this is similar to visibility timeout in AWS SQS
-                    processRecord(record).block(processingTimeout);
+                    processRecordWithTimeout(record).block();
                 }).repeat()
                 .subscribe();
     }
 
-    private Mono<Void> processRecord(ReceiverRecord<String, WalletCommandEvent> record) {
+    private void receiveInLanes(Flux<ReceiverRecord<String, WalletCommandEvent>> recordsProducer) {
+        //Records are spread across fixed number of lanes by wallet, each lane processes its records one by one,
+        //so commands for the same wallet keep their order while different wallets are processed in parallel.
+        //Number of groups is bounded by concurrency, so groupBy can't starve on too many open groups.
+        recordsProducer.retryWhen(Retry.indefinitely())
+                .groupBy(this::resolveProcessingLane)
+                .flatMap(this::processLane, concurrency)
+                .repeat()
+                .subscribe();
+    }
+
+    private Flux<Void> processLane(Flux<ReceiverRecord<String, WalletCommandEvent>> lane) {
+        if (batchSize > 1) {
+            //Records already waiting in the lane are taken together, consecutive records of the same wallet
+            //are executed as one batch, so wallet is loaded and stored once for all of them
+            return lane.bufferTimeout(batchSize, batchTimeout, true)
+                    .concatMap(records -> Flux.fromIterable(splitByWallet(records))
+                            .concatMap(walletRecords -> nonBlockingRetry
+                                    ? processRecordsOrPark(walletRecords)
+                                    : processRecordsWithTimeout(walletRecords)));
+        } else {
+            return lane.concatMap(record -> nonBlockingRetry ? processRecordOrPark(record) : processRecordWithTimeout(record));
+        }
+    }
+
+    private List<List<ReceiverRecord<String, WalletCommandEvent>>> splitByWallet(
+            List<ReceiverRecord<String, WalletCommandEvent>> records) {
+        List<List<ReceiverRecord<String, WalletCommandEvent>>> walletRecords = new ArrayList<>();
+        for (ReceiverRecord<String, WalletCommandEvent> record : records) {
+            if (walletRecords.isEmpty()
+                    || !Objects.equals(walletRecords.getLast().getFirst().value().walletId(), record.value().walletId())) {
+                walletRecords.add(new ArrayList<>());
+            }
+            walletRecords.getLast().add(record);
+        }
+        return walletRecords;
+    }
+
+    private int resolveProcessingLane(ReceiverRecord<String, WalletCommandEvent> record) {
+        return Math.floorMod(resolveWalletKey(record).hashCode(), concurrency);
+    }
+
+    private String resolveWalletKey(ReceiverRecord<String, WalletCommandEvent> record) {
+        //Records are keyed by wallet id, falling back to partition when key is missing still keeps partition order
+        return Objects.requireNonNullElseGet(
+                record.key(), () -> String.valueOf(record.receiverOffset().topicPartition().partition()));
+    }
+
+    private Mono<Void> processRecordOrPark(ReceiverRecord<String, WalletCommandEvent> record) {
+        String walletKey = resolveWalletKey(record);
+        if (parkIfWalletParked(walletKey, List.of(record))) {
+            return Mono.empty();
+        }
+        return processRecord(record, Retry.max(0))
+                .timeout(processingTimeout)
+                .onErrorResume(throwable -> park(walletKey, List.of(record), throwable));
+    }
+
+    private Mono<Void> processRecordsOrPark(List<ReceiverRecord<String, WalletCommandEvent>> records) {
+        if (records.size() == 1) {
+            return processRecordOrPark(records.getFirst());
+        }
+        String walletKey = resolveWalletKey(records.getFirst());
+        if (parkIfWalletParked(walletKey, records)) {
+            return Mono.empty();
+        }
+        if (anyInvalid(records)) {
+            return Flux.fromIterable(records).concatMap(this::processRecordOrPark).then();
+        }
+        return processBatch(records, Retry.max(0))
+                .timeout(processingTimeout)
+                .onErrorResume(throwable -> park(walletKey, records, throwable));
+    }
+
+    private boolean parkIfWalletParked(String walletKey, List<ReceiverRecord<String, WalletCommandEvent>> records) {
+        //Next records of wallet with parked records wait behind them, so wallet's commands keep their order.
+        //Done atomically with removal of last parked record, so records are never added to queue which is not retried anymore
+        return parkedRecords.computeIfPresent(walletKey, (key, parked) -> {
+            parked.records().addAll(records);
+            return parked;
+        }) != null;
+    }
+
+    private Mono<Void> park(String walletKey,
+                            List<ReceiverRecord<String, WalletCommandEvent>> records,
+                            Throwable throwable) {
+        //Failed records are retried in background, so the lane keeps processing records of other wallets.
+        //Parked records are not acknowledged, with deferred commits they hold back commits of their partition only,
+        //consumption is paused once max deferred commits are waiting
+        log.warn("Error while processing {} events for wallet: {} with offset: {}, retrying without blocking other wallets",
+                records.size(),
+                walletKey,
+                records.getFirst().receiverOffset().offset(),
+                throwable);
+        //Records of a wallet come from single partition, which is kept so they can be dropped once it's revoked
+        ParkedRecords parked = new ParkedRecords(
+                records.getFirst().receiverOffset().topicPartition(), new ConcurrentLinkedQueue<>(records), Disposables.swap());
+        parkedRecords.put(walletKey, parked);
+        parked.retry().update(Mono.delay(retryDelay)
+                .thenMany(Mono.defer(() -> processRecordWithTimeout(parked.records().peek()))
+                        .repeat(() -> removeProcessedParkedRecord(walletKey, parked)))
+                .subscribe());
+        return Mono.empty();
+    }
+
+    private boolean removeProcessedParkedRecord(String walletKey, ParkedRecords parked) {
+        //Returns whether there are more parked records of the wallet,
+        //records dropped on revocation (even if the wallet was parked again since) are not retried anymore
+        AtomicBoolean hasMore = new AtomicBoolean();
+        parkedRecords.computeIfPresent(walletKey, (key, current) -> {
+            if (current != parked) {
+                return current;
+            }
+            current.records().poll();
+            hasMore.set(!current.records().isEmpty());
+            return hasMore.get() ? current : null;
+        });
+        return hasMore.get();
+    }
+
+    @Override
+    public void onRevoked(Collection<TopicPartition> partitions) {
+        //Offsets of parked records are not committed, so the partition's new owner consumes them again.
+        //Their retries are stopped, so commands of the wallet are not executed by two instances at once
+        parkedRecords.values().removeIf(parked -> {
+            if (!partitions.contains(parked.partition())) {
+                return false;
+            }
+            log.info("Dropping {} parked events of revoked partition: {}", parked.records().size(), parked.partition());
+            parked.retry().dispose();
+            return true;
+        });
+    }
+
+    private Mono<Void> processRecordWithTimeout(ReceiverRecord<String, WalletCommandEvent> record) {
+        //Offsets are committed in order per partition (deferred commits), so record which can't be processed in time
+        //is moved to DLT to fill the gap instead of blocking commits of whole partition
+        return processRecord(record, Retry.backoff(retryCount, retryDelay))
+                .timeout(processingTimeout)
+                .onErrorResume(throwable -> {
+                    log.error("Error while processing {} {} with offset: {}, sending to DLT",
+                            record.value().getClass().getSimpleName(),
+                            record.value().id(),
+                            record.receiverOffset().offset(),
+                            throwable);
+                    return sendToDlt(record);
+                });
+    }
+
+    private Mono<Void> processRecordsWithTimeout(List<ReceiverRecord<String, WalletCommandEvent>> records) {
+        if (records.size() == 1) {
+            return processRecordWithTimeout(records.getFirst());
+        }
+        if (anyInvalid(records)) {
+            return Flux.fromIterable(records).concatMap(this::processRecordWithTimeout).then();
+        }
+        return processBatch(records, Retry.backoff(retryCount, retryDelay))
+                .timeout(processingTimeout)
+                .onErrorResume(throwable -> {
+                    log.error("Error while processing batch of {} events for wallet: {}, sending to DLT",
+                            records.size(),
+                            records.getFirst().value().walletId(),
+                            throwable);
+                    return Flux.fromIterable(records).concatMap(this::sendToDlt).then();
+                });
+    }
+
+    private boolean anyInvalid(List<ReceiverRecord<String, WalletCommandEvent>> records) {
+        //Invalid records are rare, so in such case whole batch is processed one by one
+        return records.stream()
+                .anyMatch(record -> annotationProcessingValidator.validate(record.value()).hasErrors());
+    }
+
+    private Mono<Void> processBatch(List<ReceiverRecord<String, WalletCommandEvent>> records, Retry retry) {
+        List<WalletCommand> commands = records.stream()
+                .map(record -> WalletCommandEventMapper.map(record.value()))
+                .toList();
+        return processWalletCommandUseCase.processBatch(commands)
+                .retryWhen(retry)
+                .doOnSuccess(v -> {
+                    log.debug("Processed batch of {} events for wallet: {} with offsets: {}-{}, acknowledging",
+                            records.size(),
+                            records.getFirst().value().walletId(),
+                            records.getFirst().receiverOffset().offset(),
+                            records.getLast().receiverOffset().offset());
+                    records.forEach(record -> record.receiverOffset().acknowledge());
+                });
+    }
+
+    private Mono<Void> processRecord(ReceiverRecord<String, WalletCommandEvent> record, Retry retry) {
         BindingResult validationResult = annotationProcessingValidator.validate(record.value());
         if (validationResult.hasErrors()) {
             log.error("Validation error: {} {} with offset: {}, sending to DLT, errors: {}",
@@ -51,19 +270,29 @@ public class KafkaWalletCommandEventsReactiveListener {
             return sendToDlt(record);
         } else {
             return processWalletCommandUseCase.process(WalletCommandEventMapper.map(record.value()))
-                    .retryWhen(Retry.backoff(retryCount, retryDelay))
+                    .retryWhen(retry)
                     .doOnSuccess(v -> {
-                        log.info("Processed event: {} {} with offset: {}, acknowledging",
-                                record.value().getClass().getSimpleName(),
-                                record.value().id(),
-                                record.receiverOffset().offset());
+                        if (log.isDebugEnabled()) {
+                            log.debug("Processed event: {} {} with offset: {}, acknowledging",
+                                    record.value().getClass().getSimpleName(),
+                                    record.value().id(),
+                                    record.receiverOffset().offset());
+                        }
                         record.receiverOffset().acknowledge();
-                    }).doOnError(throwable -> sendToDlt(record));
+                    });
         }
     }
 
     private Mono<Void> sendToDlt(ReceiverRecord<String, WalletCommandEvent> record) {
-        return dltProducer.send(walletCommandsDeadLetterTopic, record.key(), record.value())
+        //Record is acknowledged only once it's in DLT, otherwise its offset would hold back commits of the partition,
+        //so sending is retried until it succeeds (or the partition is revoked)
+        return Mono.defer(() -> dltProducer.send(walletCommandsDeadLetterTopic, record.key(), record.value()))
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, retryDelay)
+                        .doBeforeRetry(signal -> log.error("Error while sending {} {} with offset: {} to DLT, retrying",
+                                record.value().getClass().getSimpleName(),
+                                record.value().id(),
+                                record.receiverOffset().offset(),
+                                signal.failure())))
                 .doOnSuccess(s -> {
                     log.info("{} {} (offset: {}) sent to DLT: {}",
                             record.value().getClass().getSimpleName(),
@@ -73,4 +302,9 @@ public class KafkaWalletCommandEventsReactiveListener {
                     record.receiverOffset().acknowledge();
                 }).then();
     }
+
+    private record ParkedRecords(TopicPartition partition,
+                                 Queue<ReceiverRecord<String, WalletCommandEvent>> records,
+                                 Disposable.Swap retry) {
+    }
 }
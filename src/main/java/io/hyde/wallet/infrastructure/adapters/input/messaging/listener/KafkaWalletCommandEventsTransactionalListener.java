@@ -0,0 +1,143 @@
+package io.hyde.wallet.infrastructure.adapters.input.messaging.listener;
+
+import io.hyde.wallet.application.ports.input.ProcessWalletCommandUseCase;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WalletCommandEvent;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.mapper.WalletCommandEventMapper;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.producer.WalletEventsTransaction;
+import io.hyde.wallet.utils.validation.AnnotationProcessingValidator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.validation.BindingResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.TransactionManager;
+import reactor.util.context.Context;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+//Exactly once mode, wallet events sent while processing batch of consumed records and offsets of the batch
+//are committed in one Kafka transaction. Executed commands are marked as send only after the commit
+@Slf4j
+@RequiredArgsConstructor
+public class KafkaWalletCommandEventsTransactionalListener {
+
+    private final Duration processingTimeout;
+    private final int retryCount;
+    private final Duration retryDelay;
+    private final int concurrency;
+    //Each receiver (consumer of the group) has its own transactional producer
+    private final List<TransactionalReceiver> receivers;
+    private final AnnotationProcessingValidator annotationProcessingValidator;
+    private final ProcessWalletCommandUseCase processWalletCommandUseCase;
+    private final String walletCommandsDeadLetterTopic;
+    private final ReactiveKafkaProducerTemplate<String, WalletCommandEvent> dltProducer;
+
+    @PostConstruct
+    void receive() {
+        receivers.forEach(this::receive);
+    }
+
+    private void receive(TransactionalReceiver receiver) {
+        //Transaction is started for each polled batch, next batch is received once previous one is committed or aborted.
+        //Aborted batch fails the receiver, so it's subscribed again and records are redelivered from committed offsets
+        TransactionManager transactionManager = receiver.sender().transactionManager();
+        receiver.consumer().receiveExactlyOnce(transactionManager)
+                .concatMap(records -> processInTransaction(records, receiver.sender())
+                        .onErrorResume(throwable -> {
+                            log.error("Error while processing records in transaction, aborting", throwable);
+                            return transactionManager.<Void>abort().then(Mono.error(throwable));
+                        }))
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, retryDelay))
+                .subscribe();
+    }
+
+    private Mono<Void> processInTransaction(Flux<ConsumerRecord<String, WalletCommandEvent>> records,
+                                            KafkaSender<String, WalletEvent> sender) {
+        WalletEventsTransaction transaction = new WalletEventsTransaction(sender);
+        //Records are spread across lanes by wallet same as in non transactional listener, so wallet's commands keep their order
+        return records.groupBy(this::resolveProcessingLane)
+                .flatMap(lane -> lane.concatMap(this::processRecordWithTimeout), concurrency)
+                .then(sender.transactionManager().<Void>commit())
+                .contextWrite(Context.of(WalletEventsTransaction.class, transaction))
+                .then(Mono.defer(() -> markExecutedCommandsAsSend(transaction.getSentExecutedCommandIds())));
+    }
+
+    private int resolveProcessingLane(ConsumerRecord<String, WalletCommandEvent> record) {
+        //Records are keyed by wallet id, falling back to partition when key is missing still keeps partition order
+        String walletKey = Objects.requireNonNullElseGet(record.key(), () -> String.valueOf(record.partition()));
+        return Math.floorMod(walletKey.hashCode(), concurrency);
+    }
+
+    private Mono<Void> processRecordWithTimeout(ConsumerRecord<String, WalletCommandEvent> record) {
+        //Record which can't be processed is moved to DLT, so the batch can be committed.
+        //Failure of DLT send is propagated, so the transaction is aborted and nothing is lost
+        return processRecord(record)
+                .timeout(processingTimeout)
+                .onErrorResume(throwable -> {
+                    log.error("Error while processing {} {} with offset: {}, sending to DLT",
+                            record.value().getClass().getSimpleName(),
+                            record.value().id(),
+                            record.offset(),
+                            throwable);
+                    return sendToDlt(record);
+                });
+    }
+
+    private Mono<Void> processRecord(ConsumerRecord<String, WalletCommandEvent> record) {
+        BindingResult validationResult = annotationProcessingValidator.validate(record.value());
+        if (validationResult.hasErrors()) {
+            log.error("Validation error: {} {} with offset: {}, sending to DLT, errors: {}",
+                    record.value().getClass().getSimpleName(),
+                    record.value().id(),
+                    record.offset(),
+                    validationResult.getAllErrors());
+            return sendToDlt(record);
+        }
+        return processWalletCommandUseCase.process(WalletCommandEventMapper.map(record.value()))
+                .retryWhen(Retry.backoff(retryCount, retryDelay))
+                .doOnSuccess(v -> {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Processed event: {} {} with offset: {}",
+                                record.value().getClass().getSimpleName(),
+                                record.value().id(),
+                                record.offset());
+                    }
+                });
+    }
+
+    private Mono<Void> markExecutedCommandsAsSend(Set<String> executedCommandIds) {
+        //Events are already committed, so marking is retried until it succeeds before next batch is received,
+        //otherwise commands would stay not send (outbox jobs don't run in this mode) and their events could be sent again
+        if (executedCommandIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> processWalletCommandUseCase.markExecutedCommandsAsSend(executedCommandIds))
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, retryDelay)
+                        .doBeforeRetry(signal -> log.error("Error while marking {} executed commands as send, retrying",
+                                executedCommandIds.size(), signal.failure())));
+    }
+
+    private Mono<Void> sendToDlt(ConsumerRecord<String, WalletCommandEvent> record) {
+        return dltProducer.send(walletCommandsDeadLetterTopic, record.key(), record.value())
+                .doOnSuccess(s -> log.info("{} {} (offset: {}) sent to DLT: {}",
+                        record.value().getClass().getSimpleName(),
+                        record.value().id(),
+                        record.offset(),
+                        walletCommandsDeadLetterTopic))
+                .then();
+    }
+
+    public record TransactionalReceiver(ReactiveKafkaConsumerTemplate<String, WalletCommandEvent> consumer,
+                                        KafkaSender<String, WalletEvent> sender) {
+    }
+}
@@ -0,0 +1,16 @@
+package io.hyde.wallet.infrastructure.adapters.input.messaging.listener;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+
+//Notified about partitions of wallet commands topic assigned to or revoked from any receiver of this instance,
+//so local state of wallets (e.g. cache) can follow partitions ownership
+public interface WalletCommandPartitionsHook {
+
+    default void onAssigned(Collection<TopicPartition> partitions) {
+    }
+
+    default void onRevoked(Collection<TopicPartition> partitions) {
+    }
+}
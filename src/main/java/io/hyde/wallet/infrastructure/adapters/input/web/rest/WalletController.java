@@ -4,6 +4,7 @@ import io.hyde.wallet.application.ports.input.CreateWalletUseCase;
 import io.hyde.wallet.application.ports.input.FindWalletsUseCase;
 import io.hyde.wallet.infrastructure.adapters.input.web.rest.request.CreateWalletRequest;
 import io.hyde.wallet.infrastructure.adapters.input.web.rest.response.WalletDto;
+import io.hyde.wallet.infrastructure.adapters.input.web.rest.response.WalletsCursorPageDto;
 import io.hyde.wallet.utils.validation.ValidationConsts;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
@@ -12,9 +13,11 @@ import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import org.hibernate.validator.constraints.Length;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,8 +28,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Optional;
+
 import static io.hyde.wallet.infrastructure.adapters.input.web.rest.WalletController.BASE_URL;
 
 @RestController
@@ -52,6 +58,31 @@ class WalletController {
                 .map(page -> page.map(WalletDto::from));
     }
 
+    @GetMapping("/cursor")
+    public Mono<WalletsCursorPageDto> findAllWalletsByCursor(@RequestParam(value = "after", required = false)
+                                                             @Length(max = ValidationConsts.MAX_ID_LENGTH, message = "Cursor cannot be longer than {max} characters")
+                                                             @Pattern(regexp = ValidationConsts.ID_REGEXP, message = "Invalid cursor format")
+                                                             String after,
+                                                             @RequestParam(value = "pageSize", defaultValue = "10")
+                                                             @Positive(message = "Page size must be positive number")
+                                                             @Max(value = 100, message = "Page size must be less than or equal to {max}")
+                                                             int pageSize) {
+        return findWalletsUseCase.findAllWallets(Optional.ofNullable(after), Limit.of(pageSize))
+                .map(WalletDto::from)
+                .collectList()
+                .map(wallets -> WalletsCursorPageDto.from(wallets, pageSize));
+    }
+
+    //Streams all wallets (starting after given id), used for exports, stream can be resumed from last received wallet id
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<WalletDto> streamAllWallets(@RequestParam(value = "after", required = false)
+                                            @Length(max = ValidationConsts.MAX_ID_LENGTH, message = "Cursor cannot be longer than {max} characters")
+                                            @Pattern(regexp = ValidationConsts.ID_REGEXP, message = "Invalid cursor format")
+                                            String after) {
+        return findWalletsUseCase.findAllWallets(Optional.ofNullable(after), Limit.unlimited())
+                .map(WalletDto::from);
+    }
+
     @GetMapping("/{walletId}")
     public Mono<ResponseEntity<WalletDto>> findWallet(@PathVariable
                                                       @Length(max = ValidationConsts.MAX_ID_LENGTH, message = "Wallet id cannot be longer than {max} characters")
@@ -3,6 +3,8 @@ package io.hyde.wallet.infrastructure.adapters.input.web.rest.request;
 import io.hyde.wallet.application.dto.CreateTokenRequestDto;
 import io.hyde.wallet.application.dto.CreateWalletRequestDto;
 import io.hyde.wallet.utils.validation.ValidationConsts;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import org.hibernate.validator.constraints.Length;
@@ -10,9 +12,12 @@ import org.hibernate.validator.constraints.Length;
 public record CreateTokenRequest(@NotBlank(message = "Name is required")
                                  @Length(max = ValidationConsts.MAX_TOKEN_LENGTH, message = "Name cannot be longer than {max} characters")
                                  @Pattern(regexp = ValidationConsts.TOKEN_REGEXP, message = "Invalid name format")
-                                 String name) {
+                                 String name,
+                                 @Min(value = 0, message = "Scale cannot be negative")
+                                 @Max(value = ValidationConsts.MAX_TOKEN_SCALE, message = "Scale cannot be greater than {value}")
+                                 Integer scale) {
 
     public CreateTokenRequestDto toDto() {
-        return new CreateTokenRequestDto(name);
+        return new CreateTokenRequestDto(name, scale);
     }
 }
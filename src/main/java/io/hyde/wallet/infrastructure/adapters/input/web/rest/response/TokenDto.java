@@ -2,9 +2,9 @@ package io.hyde.wallet.infrastructure.adapters.input.web.rest.response;
 
 import io.hyde.wallet.domain.model.Token;
 
-public record TokenDto(String name) {
+public record TokenDto(String name, Integer scale) {
 
     public static TokenDto from(Token token) {
-        return new TokenDto(token.getName());
+        return new TokenDto(token.getName(), token.getScale());
     }
 }
@@ -0,0 +1,14 @@
+package io.hyde.wallet.infrastructure.adapters.input.web.rest.response;
+
+import java.util.List;
+
+//Next cursor is id of the last wallet on the page, it's null when there are no more wallets
+public record WalletsCursorPageDto(List<WalletDto> content,
+                                   String nextCursor) {
+
+    public static WalletsCursorPageDto from(List<WalletDto> content, int pageSize) {
+        return new WalletsCursorPageDto(
+                content,
+                content.size() < pageSize ? null : content.getLast().id());
+    }
+}
@@ -0,0 +1,63 @@
+package io.hyde.wallet.infrastructure.adapters.messaging.serialization;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+//Deserializer of wallet commands and events written by WalletMessageSerializer in any format
+//or by Spring's JsonSerializer, types are resolved from registry of known messages only
+public class WalletMessageDeserializer implements Deserializer<Object> {
+
+    private final Map<WalletMessageFormat, Map<Class<?>, ObjectReader>> readers = new EnumMap<>(WalletMessageFormat.class);
+
+    public WalletMessageDeserializer() {
+        for (WalletMessageFormat format : WalletMessageFormat.values()) {
+            readers.put(format, WalletMessageTypes.types().values().stream()
+                    .collect(Collectors.toUnmodifiableMap(
+                            type -> type,
+                            type -> format.objectMapper().readerFor(type))));
+        }
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        throw new SerializationException("Type header is required to deserialize wallet message");
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        Class<?> type = resolveType(headers);
+        try {
+            return readers.get(WalletMessageFormat.detect(data)).get(type).readValue(data);
+        } catch (IOException e) {
+            throw new SerializationException("Can't deserialize " + type.getSimpleName(), e);
+        }
+    }
+
+    private Class<?> resolveType(Headers headers) {
+        return headerValue(headers, WalletMessageTypes.TYPE_HEADER)
+                .flatMap(WalletMessageTypes::type)
+                .or(() -> headerValue(headers, AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME)
+                        .flatMap(WalletMessageTypes::typeByClassName))
+                .orElseThrow(() -> new SerializationException("Unknown wallet message type"));
+    }
+
+    private Optional<String> headerValue(Headers headers, String name) {
+        return Optional.ofNullable(headers.lastHeader(name))
+                .map(Header::value)
+                .map(value -> new String(value, StandardCharsets.UTF_8));
+    }
+}
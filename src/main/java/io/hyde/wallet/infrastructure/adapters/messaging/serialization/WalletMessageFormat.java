@@ -0,0 +1,50 @@
+package io.hyde.wallet.infrastructure.adapters.messaging.serialization;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperBuilder;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import java.util.Locale;
+
+enum WalletMessageFormat {
+
+    //Same payload as Spring's JsonSerializer, so existing consumers can read it
+    JSON(JsonMapper.builder()),
+    //Binary JSON, field names are shared within message and numbers are not written as text
+    SMILE(SmileMapper.builder());
+
+    static final String FORMAT_CONFIG = "wallet.messages.format";
+
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final ObjectMapper objectMapper;
+
+    WalletMessageFormat(MapperBuilder<?, ?> mapperBuilder) {
+        //Blackbird replaces reflective access to properties with generated lambdas
+        this.objectMapper = mapperBuilder
+                .addModule(new JavaTimeModule())
+                .addModule(new BlackbirdModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+    }
+
+    ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    static WalletMessageFormat parse(Object format) {
+        return format == null ? JSON : valueOf(format.toString().trim().toUpperCase(Locale.ROOT));
+    }
+
+    static WalletMessageFormat detect(byte[] data) {
+        //Smile messages always start with its header, so both formats can be read during migration
+        return data.length >= SMILE_HEADER.length
+                && data[0] == SMILE_HEADER[0] && data[1] == SMILE_HEADER[1] && data[2] == SMILE_HEADER[2]
+                ? SMILE
+                : JSON;
+    }
+}
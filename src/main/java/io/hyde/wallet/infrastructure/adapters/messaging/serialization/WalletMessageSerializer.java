@@ -0,0 +1,60 @@
+package io.hyde.wallet.infrastructure.adapters.messaging.serialization;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+//Serializer of wallet commands and events, writes short type id header instead of class name
+//and uses writers prepared for each known type. Format is set with wallet.messages.format (json or smile)
+public class WalletMessageSerializer implements Serializer<Object> {
+
+    private Map<Class<?>, TypedWriter> writers = createWriters(WalletMessageFormat.JSON);
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        writers = createWriters(WalletMessageFormat.parse(configs.get(WalletMessageFormat.FORMAT_CONFIG)));
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null) {
+            return null;
+        }
+        TypedWriter writer = writers.get(data.getClass());
+        if (writer == null) {
+            throw new SerializationException("Unknown wallet message type: " + data.getClass().getName());
+        }
+        if (headers != null) {
+            headers.remove(WalletMessageTypes.TYPE_HEADER);
+            headers.add(WalletMessageTypes.TYPE_HEADER, writer.typeId());
+        }
+        try {
+            return writer.writer().writeValueAsBytes(data);
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Can't serialize " + data.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static Map<Class<?>, TypedWriter> createWriters(WalletMessageFormat format) {
+        return WalletMessageTypes.types().entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        Map.Entry::getValue,
+                        entry -> new TypedWriter(
+                                entry.getKey().getBytes(StandardCharsets.UTF_8),
+                                format.objectMapper().writerFor(entry.getValue()))));
+    }
+
+    private record TypedWriter(byte[] typeId, ObjectWriter writer) {
+    }
+}
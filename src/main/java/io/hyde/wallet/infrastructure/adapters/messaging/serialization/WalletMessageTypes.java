@@ -0,0 +1,52 @@
+package io.hyde.wallet.infrastructure.adapters.messaging.serialization;
+
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.BlockFundsCommandEvent;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.DepositFundsCommandEvent;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.ReleaseFundsCommandEvent;
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WithdrawFundsCommandEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.ErrorEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsAddedEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsBlockedEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsReleasedEvent;
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsWithdrawnEvent;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+//Short type ids of wallet commands and events sent in type header instead of class names,
+//types are resolved from this fixed registry only, without loading classes by name
+final class WalletMessageTypes {
+
+    static final String TYPE_HEADER = "wallet-type";
+
+    private static final Map<String, Class<?>> TYPES = Map.of(
+            "deposit-funds", DepositFundsCommandEvent.class,
+            "block-funds", BlockFundsCommandEvent.class,
+            "release-funds", ReleaseFundsCommandEvent.class,
+            "withdraw-funds", WithdrawFundsCommandEvent.class,
+            "funds-added", FundsAddedEvent.class,
+            "funds-blocked", FundsBlockedEvent.class,
+            "funds-released", FundsReleasedEvent.class,
+            "funds-withdrawn", FundsWithdrawnEvent.class,
+            "error", ErrorEvent.class);
+
+    private static final Map<String, Class<?>> TYPES_BY_CLASS_NAME = TYPES.values().stream()
+            .collect(Collectors.toUnmodifiableMap(Class::getName, type -> type));
+
+    private WalletMessageTypes() {
+    }
+
+    static Map<String, Class<?>> types() {
+        return TYPES;
+    }
+
+    static Optional<Class<?>> type(String typeId) {
+        return Optional.ofNullable(TYPES.get(typeId));
+    }
+
+    static Optional<Class<?>> typeByClassName(String className) {
+        //Messages sent by Spring's JsonSerializer carry class name in type header
+        return Optional.ofNullable(TYPES_BY_CLASS_NAME.get(className));
+    }
+}
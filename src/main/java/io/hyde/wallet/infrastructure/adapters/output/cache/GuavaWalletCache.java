@@ -0,0 +1,59 @@
+package io.hyde.wallet.infrastructure.adapters.output.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.hyde.wallet.application.ports.output.WalletCachePort;
+import io.hyde.wallet.domain.model.Wallet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+//Wallets are consumed from partitioned topic, so the same instance keeps processing the same wallets.
+//Cache is only an optimization, stale wallet is detected by optimistic locking when it's stored.
+@Slf4j
+@Component
+class GuavaWalletCache implements WalletCachePort {
+
+    private final Cache<String, Wallet> cache;
+
+    public GuavaWalletCache(@Value("${wallets.cache.maximum-size}") long maximumSize,
+                            @Value("${wallets.cache.expire-after-access}") Duration expireAfterAccess,
+                            MeterRegistry meterRegistry) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "wallets");
+    }
+
+    @Override
+    public Optional<Wallet> get(String id) {
+        //Returning a copy, so changes made during command execution are not visible until wallet is stored
+        return Optional.ofNullable(cache.getIfPresent(id)).map(Wallet::copy);
+    }
+
+    @Override
+    public void put(Wallet wallet) {
+        //Keeping wallet with higher version in case of concurrent updates
+        cache.asMap().merge(wallet.getId(), wallet.copy(), (cached, updated) ->
+                cached.getVersion() > updated.getVersion() ? cached : updated);
+    }
+
+    @Override
+    public void invalidate(String id) {
+        log.info("Invalidating cached wallet: {}", id);
+        cache.invalidate(id);
+    }
+
+    @Override
+    public void invalidateAll() {
+        log.info("Invalidating all cached wallets");
+        cache.invalidateAll();
+    }
+}
@@ -1,6 +1,6 @@
 package io.hyde.wallet.infrastructure.adapters.output.messaging.events;
 
-import io.hyde.wallet.domain.model.Wallet;
+import io.hyde.wallet.domain.model.WalletState;
 import io.hyde.wallet.domain.model.command.result.DepositFundsCommandResult;
 
 import java.math.BigDecimal;
@@ -12,7 +12,7 @@ public record FundsAddedEvent(String id,
                               WalletSnapshot wallet,
                               LocalDateTime updatedAt) implements WalletEvent {
 
-    public static FundsAddedEvent from(DepositFundsCommandResult result, Wallet wallet) {
+    public static FundsAddedEvent from(DepositFundsCommandResult result, WalletState wallet) {
         return new FundsAddedEvent(
                 result.getId(),
                 result.getToken(),
@@ -1,6 +1,6 @@
 package io.hyde.wallet.infrastructure.adapters.output.messaging.events;
 
-import io.hyde.wallet.domain.model.Wallet;
+import io.hyde.wallet.domain.model.WalletState;
 import io.hyde.wallet.domain.model.command.result.BlockFundsCommandResult;
 
 import java.math.BigDecimal;
@@ -13,7 +13,7 @@ public record FundsBlockedEvent(String id,
                                 WalletSnapshot wallet,
                                 LocalDateTime updatedAt) implements WalletEvent {
 
-    public static FundsBlockedEvent from(BlockFundsCommandResult result, Wallet wallet) {
+    public static FundsBlockedEvent from(BlockFundsCommandResult result, WalletState wallet) {
         return new FundsBlockedEvent(
                 result.getId(),
                 result.getToken(),
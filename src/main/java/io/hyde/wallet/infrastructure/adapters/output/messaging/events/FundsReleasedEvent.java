@@ -1,6 +1,6 @@
 package io.hyde.wallet.infrastructure.adapters.output.messaging.events;
 
-import io.hyde.wallet.domain.model.Wallet;
+import io.hyde.wallet.domain.model.WalletState;
 import io.hyde.wallet.domain.model.command.result.ReleaseFundsCommandResult;
 
 import java.math.BigDecimal;
@@ -13,7 +13,7 @@ public record FundsReleasedEvent(String id,
                                  WalletSnapshot wallet,
                                  LocalDateTime updatedAt) implements WalletEvent {
 
-    public static FundsReleasedEvent from(ReleaseFundsCommandResult result, Wallet wallet) {
+    public static FundsReleasedEvent from(ReleaseFundsCommandResult result, WalletState wallet) {
         return new FundsReleasedEvent(
                 result.getId(),
                 result.getLockId(),
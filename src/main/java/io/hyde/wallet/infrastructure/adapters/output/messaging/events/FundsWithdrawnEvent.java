@@ -1,6 +1,6 @@
 package io.hyde.wallet.infrastructure.adapters.output.messaging.events;
 
-import io.hyde.wallet.domain.model.Wallet;
+import io.hyde.wallet.domain.model.WalletState;
 import io.hyde.wallet.domain.model.command.result.WithdrawFundsCommandResult;
 
 import java.math.BigDecimal;
@@ -13,7 +13,7 @@ public record FundsWithdrawnEvent(String id,
                                   WalletSnapshot wallet,
                                   LocalDateTime updatedAt) implements WalletEvent {
 
-    public static FundsWithdrawnEvent from(WithdrawFundsCommandResult result, Wallet wallet) {
+    public static FundsWithdrawnEvent from(WithdrawFundsCommandResult result, WalletState wallet) {
         return new FundsWithdrawnEvent(
                 result.getId(),
                 result.getLockId(),
@@ -1,7 +1,7 @@
 package io.hyde.wallet.infrastructure.adapters.output.messaging.events;
 
-import io.hyde.wallet.domain.model.Wallet;
-import io.hyde.wallet.domain.model.Wallet.Fund;
+import io.hyde.wallet.domain.model.WalletState;
+import io.hyde.wallet.domain.model.WalletState.FundState;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -10,21 +10,20 @@ public record WalletSnapshot(String id,
                              String ownerId,
                              List<FundSnapshot> balance) {
 
-    public static WalletSnapshot from(Wallet wallet) {
+    public static WalletSnapshot from(WalletState wallet) {
         return new WalletSnapshot(
-                wallet.getId(),
-                wallet.getOwnerId(),
-                wallet.getFunds()
-                        .entrySet()
+                wallet.id(),
+                wallet.ownerId(),
+                wallet.funds()
                         .stream()
-                        .map(e -> FundSnapshot.from(e.getKey(), e.getValue()))
+                        .map(FundSnapshot::from)
                         .toList());
     }
 
     public record FundSnapshot(String token, BigDecimal available, BigDecimal blocked) {
 
-        public static FundSnapshot from(String token, Fund fund) {
-            return new FundSnapshot(token, fund.getAvailable(), fund.getTotalBlocked());
+        public static FundSnapshot from(FundState fund) {
+            return new FundSnapshot(fund.token(), fund.available(), fund.blocked());
         }
     }
 }
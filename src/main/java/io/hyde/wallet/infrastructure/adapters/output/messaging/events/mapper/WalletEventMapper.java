@@ -1,7 +1,7 @@
 package io.hyde.wallet.infrastructure.adapters.output.messaging.events.mapper;
 
 import io.hyde.wallet.domain.model.ExecutedCommand;
-import io.hyde.wallet.domain.model.Wallet;
+import io.hyde.wallet.domain.model.WalletState;
 import io.hyde.wallet.domain.model.command.result.BlockFundsCommandResult;
 import io.hyde.wallet.domain.model.command.result.DepositFundsCommandResult;
 import io.hyde.wallet.domain.model.command.result.ReleaseFundsCommandResult;
@@ -18,7 +18,7 @@ import lombok.NoArgsConstructor;
 public final class WalletEventMapper {
 
     public static WalletEvent map(ExecutedCommand executedCommand) {
-        Wallet walletSnapshot = executedCommand.getWalletSnapshot();
+        WalletState walletSnapshot = executedCommand.getWalletState();
         return switch (executedCommand.getCommandResult()) {
             case DepositFundsCommandResult command -> FundsAddedEvent.from(command, walletSnapshot);
             case BlockFundsCommandResult command -> FundsBlockedEvent.from(command, walletSnapshot);
@@ -4,13 +4,22 @@ import io.hyde.wallet.application.ports.output.WalletEventsPort;
 import io.hyde.wallet.domain.model.ExecutedCommand;
 import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent;
 import io.hyde.wallet.infrastructure.adapters.output.messaging.events.mapper.WalletEventMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.kafka.sender.MicrometerProducerListener;
 import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
@@ -18,24 +27,80 @@ class KafkaWalletEventProducer implements WalletEventsPort {
 
     private final ReactiveKafkaProducerTemplate<String, WalletEvent> kafkaProducer;
     private final String walletEventsTopic;
+    private final Timer sendLatency;
+    private final DistributionSummary pipelinedEvents;
 
     public KafkaWalletEventProducer(KafkaProperties properties,
-                                    @Value("${spring.kafka.producer.topics.wallet-events.name}") String walletEventsTopic) {
-        this.kafkaProducer = new ReactiveKafkaProducerTemplate<>(SenderOptions.create(properties.buildProducerProperties()));
+                                    @Value("${spring.kafka.producer.topics.wallet-events.name}") String walletEventsTopic,
+                                    @Value("${spring.kafka.producer.topics.wallet-events.max-in-flight}") int maxInFlight,
+                                    MeterRegistry meterRegistry) {
+        //Batching, linger, compression and idempotence are configured in producer properties,
+        //max in flight bounds events waiting for ack, so pipelined sends are backpressured.
+        //Producer client metrics (e.g. kafka.producer.batch.size.avg, kafka.producer.compression.rate.avg) are bound to registry
+        SenderOptions<String, WalletEvent> senderOptions = SenderOptions.<String, WalletEvent>create(properties.buildProducerProperties())
+                .maxInFlight(maxInFlight)
+                .producerListener(new MicrometerProducerListener(meterRegistry));
+        this.kafkaProducer = new ReactiveKafkaProducerTemplate<>(senderOptions);
         this.walletEventsTopic = walletEventsTopic;
+        this.sendLatency = Timer.builder("wallet.events.send.latency")
+                .description("Time from sending wallet event to its ack")
+                .register(meterRegistry);
+        this.pipelinedEvents = DistributionSummary.builder("wallet.events.send.pipelined")
+                .description("Events of executed commands sent together without waiting for acks")
+                .register(meterRegistry);
     }
 
     @Override
     public Mono<Void> sendEventFromExecutedCommand(ExecutedCommand executedCommand) {
-        log.info("Sending wallet update event for wallet: {} and last executed command: {}",
-                executedCommand.getWalletId(), executedCommand.getCommandResult());
-        return sendEvent(WalletEventMapper.map(executedCommand));
+        log.debug("Sending wallet update event for wallet: {} and last executed command: {}",
+                executedCommand.getWalletId(), executedCommand.getCommandId());
+        return send(WalletEventMapper.map(executedCommand), executedCommand.getId());
+    }
+
+    @Override
+    public Flux<ExecutedCommand> sendEventsFromExecutedCommands(List<ExecutedCommand> executedCommands) {
+        //Next event is sent without waiting for ack of previous one. Events of the wallet are keyed by wallet id,
+        //so they go to the same partition and idempotent producer keeps their order even when sending is retried.
+        //Each ack is correlated back to its executed command
+        pipelinedEvents.record(executedCommands.size());
+        Flux<SenderRecord<String, WalletEvent, SentEvent>> records = Flux.fromIterable(executedCommands)
+                .map(executedCommand -> {
+                    WalletEvent event = WalletEventMapper.map(executedCommand);
+                    return SenderRecord.create(walletEventsTopic, null, null, event.walletId(), event,
+                            new SentEvent(executedCommand, System.nanoTime()));
+                });
+        return kafkaProducer.send(records)
+                .map(result -> {
+                    SentEvent sentEvent = result.correlationMetadata();
+                    sendLatency.record(System.nanoTime() - sentEvent.sentNanos(), TimeUnit.NANOSECONDS);
+                    return sentEvent.executedCommand();
+                });
     }
 
     @Override
     public Mono<Void> sendEvent(WalletEvent event) {
-        log.info("Sending {} for wallet: {}", event.getClass().getSimpleName(), event.walletId());
-        return kafkaProducer.send(walletEventsTopic, event.walletId(), event)
-                .then();
+        if (log.isDebugEnabled()) {
+            log.debug("Sending {} for wallet: {}", event.getClass().getSimpleName(), event.walletId());
+        }
+        return send(event, null);
+    }
+
+    private Mono<Void> send(WalletEvent event, String executedCommandId) {
+        //Events sent while processing commands consumed in exactly once mode join transaction of consumed batch
+        return Mono.deferContextual(context -> context.<WalletEventsTransaction>getOrEmpty(WalletEventsTransaction.class)
+                .map(transaction -> transaction.send(walletEventsTopic, event, executedCommandId))
+                .orElseGet(() -> sendWithoutTransaction(event)));
+    }
+
+    private Mono<Void> sendWithoutTransaction(WalletEvent event) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return kafkaProducer.send(walletEventsTopic, event.walletId(), event)
+                    .doOnSuccess(result -> sendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .then();
+        });
+    }
+
+    private record SentEvent(ExecutedCommand executedCommand, long sentNanos) {
     }
 }
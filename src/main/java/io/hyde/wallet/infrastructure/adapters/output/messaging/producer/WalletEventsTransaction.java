@@ -0,0 +1,40 @@
+package io.hyde.wallet.infrastructure.adapters.output.messaging.producer;
+
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Kafka transaction in which wallet events of consumed batch of commands are sent, it's passed in Reactor context
+//by transactional listener, so events are committed together with offsets of the batch.
+//Executed commands whose events were sent are collected, so they can be marked as send after commit
+public class WalletEventsTransaction {
+
+    private final KafkaSender<String, WalletEvent> sender;
+    private final Set<String> sentExecutedCommandIds = ConcurrentHashMap.newKeySet();
+
+    public WalletEventsTransaction(KafkaSender<String, WalletEvent> sender) {
+        this.sender = sender;
+    }
+
+    Mono<Void> send(String topic, WalletEvent event, String executedCommandId) {
+        //Event of executed command is sent once per transaction, even if processing of its command is retried
+        if (executedCommandId != null && sentExecutedCommandIds.contains(executedCommandId)) {
+            return Mono.empty();
+        }
+        return sender.send(Mono.just(SenderRecord.create(topic, null, null, event.walletId(), event, executedCommandId)))
+                .doOnNext(result -> {
+                    if (result.correlationMetadata() != null) {
+                        sentExecutedCommandIds.add(result.correlationMetadata());
+                    }
+                })
+                .then();
+    }
+
+    public Set<String> getSentExecutedCommandIds() {
+        return Set.copyOf(sentExecutedCommandIds);
+    }
+}
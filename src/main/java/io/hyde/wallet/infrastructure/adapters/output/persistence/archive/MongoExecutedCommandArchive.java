@@ -0,0 +1,53 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.archive;
+
+import io.hyde.wallet.application.ports.output.ExecutedCommandArchivePort;
+import io.hyde.wallet.domain.model.ExecutedCommand;
+import io.hyde.wallet.domain.model.ExecutedCommandsStorageStats;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.BulkOperations.BulkMode.UNORDERED;
+
+//Archived commands are kept in separate collection without secondary indexes, they are not used for command processing
+@Component
+@RequiredArgsConstructor
+class MongoExecutedCommandArchive implements ExecutedCommandArchivePort {
+
+    static final String ARCHIVE_COLLECTION = "executedCommandArchive";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<Void> archive(List<ExecutedCommand> executedCommands) {
+        if (executedCommands.isEmpty()) {
+            return Mono.empty();
+        }
+        //Upsert by id instead of insert, so commands already archived by failed run don't fail the batch
+        ReactiveBulkOperations bulkOperations = reactiveMongoTemplate.bulkOps(UNORDERED, ExecutedCommand.class, ARCHIVE_COLLECTION);
+        executedCommands.forEach(executedCommand -> bulkOperations.replaceOne(
+                Query.query(Criteria.where("_id").is(executedCommand.getId())),
+                executedCommand,
+                FindAndReplaceOptions.options().upsert()));
+        return bulkOperations.execute().then();
+    }
+
+    @Override
+    public Mono<ExecutedCommandsStorageStats> getStorageStats() {
+        return reactiveMongoTemplate.executeCommand(
+                        new Document("collStats", reactiveMongoTemplate.getCollectionName(ExecutedCommand.class)))
+                .map(collStats -> new ExecutedCommandsStorageStats(
+                        collStats.get("count", Number.class).longValue(),
+                        collStats.get("size", Number.class).longValue(),
+                        collStats.get("storageSize", Number.class).longValue(),
+                        collStats.get("totalIndexSize", Number.class).longValue()));
+    }
+}
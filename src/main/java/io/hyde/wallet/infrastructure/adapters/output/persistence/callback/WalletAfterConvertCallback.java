@@ -0,0 +1,19 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.callback;
+
+import io.hyde.wallet.domain.model.Wallet;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveAfterConvertCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+//Verifies maintained totals of every wallet read from MongoDB, before it's used by commands or REST endpoints
+@Component
+class WalletAfterConvertCallback implements ReactiveAfterConvertCallback<Wallet> {
+
+    @Override
+    public Publisher<Wallet> onAfterConvert(Wallet wallet, Document document, String collection) {
+        wallet.verifyTotalBlocked();
+        return Mono.just(wallet);
+    }
+}
@@ -0,0 +1,69 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.changestream;
+
+import com.mongodb.MongoCommandException;
+import io.hyde.wallet.application.ports.output.ExecutedCommandChangesPort;
+import io.hyde.wallet.domain.model.ExecutedCommand;
+import io.hyde.wallet.domain.model.ExecutedCommandChange;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Objects;
+import java.util.Optional;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class ExecutedCommandChangeStream implements ExecutedCommandChangesPort {
+
+    //Returned when resume token is no longer in the oplog
+    private static final int CHANGE_STREAM_HISTORY_LOST_ERROR_CODE = 286;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Flux<ExecutedCommandChange> watchNotSendInserts(Optional<String> resumeToken) {
+        return resumeToken.map(token -> watch(Optional.of(token))
+                        .onErrorResume(this::isHistoryLost, t -> {
+                            //Commands inserted in the meantime are picked up by SendExecutedCommandsEventsJob
+                            log.warn("Resume token {} is no longer available, watching executed commands from now", token, t);
+                            return watch(Optional.empty());
+                        }))
+                .orElseGet(() -> watch(Optional.empty()));
+    }
+
+    private Flux<ExecutedCommandChange> watch(Optional<String> resumeToken) {
+        //Executed commands are always inserted as not send and only updated later, so watching inserts is enough
+        Aggregation filter = Aggregation.newAggregation(Aggregation.match(
+                Criteria.where("operationType").is("insert").and("fullDocument.send").is(false)));
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder().filter(filter);
+        resumeToken.ifPresent(token -> options.resumeAfter(BsonDocument.parse(token)));
+        return reactiveMongoTemplate.changeStream(
+                        reactiveMongoTemplate.getCollectionName(ExecutedCommand.class), options.build(), ExecutedCommand.class)
+                .filter(event -> event.getBody() != null && event.getResumeToken() != null)
+                .map(this::toChange);
+    }
+
+    private ExecutedCommandChange toChange(ChangeStreamEvent<ExecutedCommand> event) {
+        return new ExecutedCommandChange(
+                Objects.requireNonNull(event.getBody()),
+                Objects.requireNonNull(event.getResumeToken()).asDocument().toJson());
+    }
+
+    private boolean isHistoryLost(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoCommandException mongoCommandException
+                    && mongoCommandException.getErrorCode() == CHANGE_STREAM_HISTORY_LOST_ERROR_CODE) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
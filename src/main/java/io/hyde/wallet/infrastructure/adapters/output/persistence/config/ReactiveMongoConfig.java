@@ -6,10 +6,15 @@ import com.mongodb.ReadConcern;
 import com.mongodb.WriteConcern;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
 import org.springframework.data.mongodb.config.AbstractReactiveMongoConfiguration;
 import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
 import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
 
 @Configuration
 @RequiredArgsConstructor
@@ -35,4 +40,16 @@ class ReactiveMongoConfig extends AbstractReactiveMongoConfiguration {
                 //Major with journal should be default but values in driver are different so setting this explicitly in the code
                 .writeConcern(WriteConcern.MAJORITY.withJournal(true));
     }
+
+    //Transactions are used only where multiple documents have to be written atomically,
+    //i.e. batch of commands or single command when wallets.transactions.enabled is set
+    @Bean
+    ReactiveMongoTransactionManager transactionManager(ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory) {
+        return new ReactiveMongoTransactionManager(reactiveMongoDatabaseFactory);
+    }
+
+    @Bean
+    TransactionalOperator transactionalOperator(ReactiveTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager);
+    }
 }
@@ -0,0 +1,33 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.migration;
+
+import io.hyde.wallet.infrastructure.adapters.output.persistence.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+//Wallets stored before lastExecutedCommandStored field was introduced are marked as not stored,
+//so ProcessMissingExecutedCommandsJob verifies them once. Update is idempotent, so it's safe to run on every instance start.
+//In transactions mode, where the job doesn't run, they are verified by lookup of their next command instead,
+//since they were written before wallet and executed command were committed together
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class LastExecutedCommandStoredMigration {
+
+    private final WalletRepository walletRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void onApplicationReady() {
+        migrate().subscribe();
+    }
+
+    Mono<Long> migrate() {
+        return walletRepository.markAllWithoutLastExecutedCommandStoredFieldAsNotStored()
+                .doOnNext(count -> log.info("Wallets migrated with not stored last executed command: {}", count))
+                .doOnError(t -> log.error("Error while migrating wallets last executed command stored field", t))
+                .onErrorComplete();
+    }
+}
@@ -2,10 +2,29 @@ package io.hyde.wallet.infrastructure.adapters.output.persistence.repository;
 
 import io.hyde.wallet.application.ports.output.ExecutedCommandPort;
 import io.hyde.wallet.domain.model.ExecutedCommand;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 public interface ExecutedCommandRepository extends ExecutedCommandPort, ReactiveCrudRepository<ExecutedCommand, String> {
 
     Mono<ExecutedCommand> findByWalletIdAndCommandId(String walletId, String commandId);
+
+    //Only ids are needed to check which commands were already stored, so wallet snapshots are not fetched
+    @Query(value = "{ 'walletId': ?0, 'commandId': { $in: ?1 } }", fields = "{ 'commandId': 1, 'send': 1 }")
+    Flux<ExecutedCommand> findAllByWalletIdAndCommandIdIn(String walletId, Collection<String> commandIds);
+
+    //Updating only send flag instead of saving whole document with embedded wallet snapshot
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$set': { 'send': true }, '$inc': { 'version': 1 } }")
+    Mono<Long> markAsSendById(String id);
+
+    //Same as above for many sent commands with single updateMany
+    @Query("{ '_id': { $in: ?0 } }")
+    @Update("{ '$set': { 'send': true }, '$inc': { 'version': 1 } }")
+    Mono<Long> markAllAsSendByIds(Collection<String> ids);
 }
@@ -0,0 +1,19 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.repository;
+
+import io.hyde.wallet.application.ports.output.OwnerWalletsPort;
+import io.hyde.wallet.domain.model.OwnerWallets;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.Update;
+import reactor.core.publisher.Mono;
+
+public interface OwnerWalletsRepository extends OwnerWalletsPort, ReactiveMongoRepository<OwnerWallets, String> {
+
+    @Query("{ '_id': ?0, 'walletsCount': { $lt: ?1 } }")
+    @Update("{ '$inc': { 'walletsCount': 1 } }")
+    Mono<Long> incrementWalletsCount(String ownerId, int walletsLimit);
+
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$inc': { 'walletsCount': -1 } }")
+    Mono<Long> decrementWalletsCount(String ownerId);
+}
@@ -0,0 +1,8 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.repository;
+
+import io.hyde.wallet.application.ports.output.ResumeTokenPort;
+import io.hyde.wallet.domain.model.ResumeToken;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+public interface ResumeTokenRepository extends ResumeTokenPort, ReactiveCrudRepository<ResumeToken, String> {
+}
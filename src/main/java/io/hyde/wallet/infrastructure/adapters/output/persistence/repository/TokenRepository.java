@@ -7,5 +7,7 @@ import reactor.core.publisher.Mono;
 
 public interface TokenRepository extends TokenPort, ReactiveCrudRepository<Token, String> {
 
+    Mono<Token> findByName(String name);
+
     Mono<Boolean> existsByName(String name);
 }
@@ -2,43 +2,28 @@ package io.hyde.wallet.infrastructure.adapters.output.persistence.repository;
 
 import io.hyde.wallet.application.ports.output.WalletPort;
 import io.hyde.wallet.domain.model.Wallet;
-import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 
-public interface WalletRepository extends WalletPort, ReactiveCrudRepository<Wallet, String> {
+public interface WalletRepository extends WalletPort, WalletRepositoryCustom, ReactiveCrudRepository<Wallet, String> {
 
-    @Aggregation(pipeline = {
-            """
-            {
-                "$lookup":
-                {
-                    "from": "executedCommand",
-                    "localField": "lastExecutedCommandResult._id",
-                    "foreignField": "commandId",
-                    "as": "commands"
-                }
-            }
-            """,
-            """
-            {
-                "$match":
-                {
-                    "lastModifiedDate": { $lt : ?0 },
-                    "lastExecutedCommandResult._id": { $exists : true },
-                    "commands": { $size : 0 }
-                }
-            }
-            """,
-            """
-            {
-                "$project":
-                {
-                    "commands": 0
-                }
-            }
-            """})
+    //Served by partial index, which contains only wallets with not yet verified last executed command
+    @Query("{ 'lastExecutedCommandStored': false, 'lastModifiedDate': { $lt: ?0 } }")
     Flux<Wallet> findAllWithoutStoredLastExecutedCommand(LocalDateTime lastModifiedDateBefore);
+
+    //Version is not incremented, so it doesn't collide with wallet updates on command processing path,
+    //if wallet was updated in the meantime it's not marked and will be checked again
+    @Query("{ '_id': ?0, 'version': ?1 }")
+    @Update("{ '$set': { 'lastExecutedCommandStored': true } }")
+    Mono<Long> markLastExecutedCommandAsStored(String id, Integer version);
+
+    //Migration of wallets stored before lastExecutedCommandStored field was introduced
+    @Query("{ 'lastExecutedCommandStored': { $exists: false }, 'lastExecutedCommandResult': { $exists: true } }")
+    @Update("{ '$set': { 'lastExecutedCommandStored': false } }")
+    Mono<Long> markAllWithoutLastExecutedCommandStoredFieldAsNotStored();
 }
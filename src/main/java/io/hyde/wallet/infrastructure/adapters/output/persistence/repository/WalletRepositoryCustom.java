@@ -0,0 +1,8 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.repository;
+
+import reactor.core.publisher.Mono;
+
+interface WalletRepositoryCustom {
+
+    Mono<Long> estimatedCount();
+}
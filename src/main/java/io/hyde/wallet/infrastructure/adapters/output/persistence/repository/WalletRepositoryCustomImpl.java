@@ -0,0 +1,18 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.repository;
+
+import io.hyde.wallet.domain.model.Wallet;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+class WalletRepositoryCustomImpl implements WalletRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<Long> estimatedCount() {
+        //Taken from collection metadata instead of counting documents
+        return reactiveMongoTemplate.estimatedCount(Wallet.class);
+    }
+}
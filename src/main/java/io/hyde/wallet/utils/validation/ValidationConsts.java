@@ -10,4 +10,7 @@ public final class ValidationConsts {
     public static final String ID_REGEXP = "[a-zA-Z0-9-]*";
     public static final int MAX_TOKEN_LENGTH = 32;
     public static final String TOKEN_REGEXP = "[a-zA-Z0-9]*";
+    //Funds of token with scale are long minor units, so balance is limited to Long.MAX_VALUE / 10^scale,
+    //at scale 8 it's still over 92 billion whole tokens
+    public static final int MAX_TOKEN_SCALE = 8;
 }
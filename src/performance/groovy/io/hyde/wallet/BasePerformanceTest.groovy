@@ -3,6 +3,7 @@ package io.hyde.wallet
 import io.hyde.wallet.utils.PerformanceTestHelper
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.test.annotation.DirtiesContext
 import org.springframework.test.context.DynamicPropertyRegistry
 import org.springframework.test.context.DynamicPropertySource
 import org.testcontainers.containers.GenericContainer
@@ -17,6 +18,9 @@ import java.util.stream.Stream
 
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
 
+//Performance tests variants use different properties, context is closed after each of them
+//so listeners of previous variant don't consume commands of the next one
+@DirtiesContext
 @SpringBootTest(classes = SuperWalletApplication.class, webEnvironment = RANDOM_PORT)
 abstract class BasePerformanceTest extends Specification {
 
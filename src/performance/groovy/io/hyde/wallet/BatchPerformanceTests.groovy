@@ -0,0 +1,15 @@
+package io.hyde.wallet
+
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+
+//Same scenario as in PerformanceTests but consecutive commands of the wallet are executed in batches
+class BatchPerformanceTests extends PerformanceTests {
+
+    @DynamicPropertySource
+    static void batchProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.consumer.topics.wallet-commands.batch-size", () -> 100)
+        //Batches are stored in MongoDB transactions, containers run as replica set
+        registry.add("wallets.transactions.enabled", () -> true)
+    }
+}
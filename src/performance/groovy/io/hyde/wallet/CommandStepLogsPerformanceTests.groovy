@@ -0,0 +1,10 @@
+package io.hyde.wallet
+
+import org.springframework.test.context.TestPropertySource
+
+//Same scenario as in PerformanceTests with logs of each command processing step enabled,
+//baseline for comparison with CommandSummaryLogsPerformanceTests.
+//Log levels are applied when environment is prepared, so they can't be set by dynamic property source
+@TestPropertySource(properties = "logging.level.io.hyde.wallet=DEBUG")
+class CommandStepLogsPerformanceTests extends PerformanceTests {
+}
@@ -0,0 +1,9 @@
+package io.hyde.wallet
+
+import org.springframework.test.context.TestPropertySource
+
+//Same scenario as in PerformanceTests with single summary record logged per command.
+//Log levels are applied when environment is prepared, so they can't be set by dynamic property source
+@TestPropertySource(properties = "logging.level.io.hyde.wallet.commands=INFO")
+class CommandSummaryLogsPerformanceTests extends PerformanceTests {
+}
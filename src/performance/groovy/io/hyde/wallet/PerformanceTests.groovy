@@ -55,6 +55,7 @@ class PerformanceTests extends BasePerformanceTest {
 
         when:
         log.warn("Sending events")
+        Map<String, Long> operationsBefore = performanceTestHelper.getDatabaseOperationsCounters()
         Flux<WalletCommandEvent> events = Flux.fromStream(IntStream.rangeClosed(1, eventsCount).boxed())
                 .map({ new DepositFundsCommandEvent(UUID.randomUUID().toString(), wallet.getId(), BTC, amount) })
         performanceTestHelper.sendWalletCommandEvents(events).subscribe()
@@ -75,11 +76,17 @@ class PerformanceTests extends BasePerformanceTest {
         and:
         log.warn("Print results")
         long elapsed = System.currentTimeMillis() - start
+        //Counters include polling queries of this test, which is negligible comparing to events count
+        Map<String, Long> operations = performanceTestHelper.getDatabaseOperationsCounters()
+                .collectEntries { operation, count -> [(operation): count - operationsBefore[operation]] }
         println("Wallets count: ${performanceTestHelper.getWalletsCount()}")
-        println("Executed commands count: ${performanceTestHelper.getWalletsCount()}")
+        println("Executed commands count: ${performanceTestHelper.getExecutedCommandsCount()}")
         println("Wallet $BTC funds: ${performanceTestHelper.getWallet(wallet.getId()).getFunds()[BTC].getAvailable()}")
         println("Total execution time: ${elapsed / 1000} [s]")
         println("Average execution time per command: ${elapsed / eventsCount} [ms]")
+        println("Database operations per command: ${operations.collectEntries { operation, count -> [(operation): count / eventsCount] }}")
+        println("Total database operations per command: ${operations.values().sum() / eventsCount}")
+        println("Executed commands storage [B]: ${performanceTestHelper.getExecutedCommandsStorageStats()}")
 
         where:
         initialEntitiesCount | eventsCount
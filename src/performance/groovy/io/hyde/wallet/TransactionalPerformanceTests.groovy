@@ -0,0 +1,13 @@
+package io.hyde.wallet
+
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+
+//Same scenario as in PerformanceTests but wallet and executed command are stored in one transaction
+class TransactionalPerformanceTests extends PerformanceTests {
+
+    @DynamicPropertySource
+    static void transactionalProperties(DynamicPropertyRegistry registry) {
+        registry.add("wallets.transactions.enabled", () -> true)
+    }
+}
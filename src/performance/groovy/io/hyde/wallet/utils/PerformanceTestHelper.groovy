@@ -11,7 +11,9 @@ import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEven
 import io.hyde.wallet.infrastructure.adapters.output.persistence.repository.ExecutedCommandRepository
 import io.hyde.wallet.infrastructure.adapters.output.persistence.repository.TokenRepository
 import io.hyde.wallet.infrastructure.adapters.output.persistence.repository.WalletRepository
+import org.bson.Document
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate
 import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate
 import org.springframework.stereotype.Component
@@ -33,6 +35,7 @@ class PerformanceTestHelper {
     private final TokenRepository tokenRepository
     private final WalletRepository walletRepository
     private final ExecutedCommandRepository executedCommandRepository
+    private final ReactiveMongoTemplate mongoTemplate
     private final ReactiveKafkaProducerTemplate<String, WalletCommandEvent> walletEventsProducer
     private final Flux<ReceiverRecord<String, WalletEvent>> walletEvents
 
@@ -40,11 +43,13 @@ class PerformanceTestHelper {
                           KafkaProperties kafkaProperties,
                           TokenRepository tokenRepository,
                           ExecutedCommandRepository executedCommandRepository,
-                          WalletRepository walletRepository) {
+                          WalletRepository walletRepository,
+                          ReactiveMongoTemplate mongoTemplate) {
         this.clock = clock
         this.tokenRepository = tokenRepository
         this.walletRepository = walletRepository
         this.executedCommandRepository = executedCommandRepository
+        this.mongoTemplate = mongoTemplate
         this.walletEventsProducer = new ReactiveKafkaProducerTemplate<>(
                 SenderOptions.create(kafkaProperties.buildProducerProperties()))
 
@@ -93,6 +98,23 @@ class PerformanceTestHelper {
         return executedCommandRepository.count().block(Duration.ofSeconds(1))
     }
 
+    Map<String, Long> getDatabaseOperationsCounters() {
+        //Server wide counters of operations (insert, query, update, delete, getmore, command) since server start
+        Document serverStatus = mongoTemplate.executeCommand(new Document("serverStatus", 1))
+                .block(Duration.ofSeconds(1))
+        Document opcounters = serverStatus.get("opcounters", Document)
+        return opcounters.collectEntries { String operation, Object count -> [(operation): (count as Number).longValue()] }
+    }
+
+    Map<String, Long> getExecutedCommandsStorageStats() {
+        //Sizes in bytes, size and avgObjSize are uncompressed BSON, storageSize is compressed size on disk
+        Document collStats = mongoTemplate.executeCommand(
+                new Document("collStats", mongoTemplate.getCollectionName(ExecutedCommand)))
+                .block(Duration.ofSeconds(1))
+        return ["size", "avgObjSize", "storageSize", "totalIndexSize"]
+                .collectEntries { String stat -> [(stat): (collStats.get(stat) as Number).longValue()] }
+    }
+
     void sendWalletCommandEvent(WalletCommandEvent event) {
         walletEventsProducer.send(BasePerformanceTest.WALLET_COMMANDS_TOPIC, event.walletId(), event)
                 .block(Duration.ofSeconds(1))
@@ -0,0 +1,19 @@
+package io.hyde.wallet
+
+import org.springframework.test.annotation.DirtiesContext
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+
+//Same scenarios as in WalletCommandExecutionIntegrationTest but consecutive commands of the wallet are executed in batches.
+//Commands are sent to separate topic, so listeners of other cached contexts don't consume them
+@DirtiesContext
+class BatchWalletCommandExecutionIntegrationTest extends WalletCommandExecutionIntegrationTest {
+
+    @DynamicPropertySource
+    static void batchProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.consumer.topics.wallet-commands.name", () -> WALLET_COMMANDS_TOPIC + "-batch")
+        registry.add("spring.kafka.consumer.topics.wallet-commands.batch-size", () -> 10)
+        //Batches are stored in MongoDB transactions, containers run as replica set
+        registry.add("wallets.transactions.enabled", () -> true)
+    }
+}
@@ -0,0 +1,17 @@
+package io.hyde.wallet
+
+import org.springframework.test.annotation.DirtiesContext
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+
+//Same scenarios as in WalletCommandExecutionIntegrationTest but records are processed in concurrent lanes.
+//Commands are sent to separate topic, so listeners of other cached contexts don't consume them
+@DirtiesContext
+class ConcurrentWalletCommandExecutionIntegrationTest extends WalletCommandExecutionIntegrationTest {
+
+    @DynamicPropertySource
+    static void concurrentProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.consumer.topics.wallet-commands.name", () -> WALLET_COMMANDS_TOPIC + "-concurrent")
+        registry.add("spring.kafka.consumer.topics.wallet-commands.concurrency", () -> 4)
+    }
+}
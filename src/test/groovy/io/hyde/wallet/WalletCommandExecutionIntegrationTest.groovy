@@ -7,6 +7,10 @@ import io.hyde.wallet.infrastructure.adapters.input.messaging.events.BlockFundsC
 import io.hyde.wallet.infrastructure.adapters.input.messaging.events.DepositFundsCommandEvent
 import io.hyde.wallet.infrastructure.adapters.input.messaging.events.ReleaseFundsCommandEvent
 import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WithdrawFundsCommandEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.ErrorEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsAddedEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsBlockedEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent
 import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletSnapshot
 import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletSnapshot.FundSnapshot
 import io.hyde.wallet.utils.TestUtils
@@ -16,6 +20,7 @@ class WalletCommandExecutionIntegrationTest extends BaseIntegrationTest {
 
     private static final String BTC = "BTC"
     private static final String ETH = "ETH"
+    private static final String USDC = "USDC"
 
     def setup() {
         testHelper.initToken(BTC)
@@ -193,6 +198,78 @@ class WalletCommandExecutionIntegrationTest extends BaseIntegrationTest {
         testHelper.verifyExecutedCommandIsMarkedAsSend(event.id(), wallet.getId())
     }
 
+    def "should process commands of many wallets keeping order of commands per wallet"() {
+        given:
+        BigDecimal amount = 1.11
+        int commandsPerWallet = 4
+
+        and:
+        List<Wallet> wallets = (1..5).collect({ testHelper.initWallet() })
+
+        and:
+        List<DepositFundsCommandEvent> events = (1..commandsPerWallet).collectMany({ i ->
+            wallets.collect({ wallet -> new DepositFundsCommandEvent(UUID.randomUUID().toString(), wallet.getId(), BTC, amount) })
+        })
+
+        when:
+        testHelper.sendWalletCommandEvents(events)
+
+        then:
+        List<WalletEvent> walletEvents = testHelper.getNextWalletEvents(events.size())
+        wallets.each({ wallet ->
+            assert walletEvents.findAll({ it.walletId() == wallet.getId() }).collect({ (it as FundsAddedEvent).id() }) ==
+                    events.findAll({ it.walletId() == wallet.getId() }).collect({ it.id() })
+        })
+
+        and:
+        wallets.each({ wallet ->
+            Wallet updatedWallet = testHelper.getWallet(wallet.getId())
+            assert updatedWallet.getLastExecutedCommandId().get() == events.findAll({ it.walletId() == wallet.getId() }).last().id()
+            TestUtils.verifyFund(updatedWallet, BTC, amount * commandsPerWallet)
+        })
+
+        and:
+        testHelper.getExecutedCommandsCount() == events.size()
+    }
+
+    def "should process consecutive commands of the same wallet keeping order of wallet and error events"() {
+        given:
+        Wallet wallet = testHelper.initWallet()
+
+        and:
+        DepositFundsCommandEvent depositEvent = new DepositFundsCommandEvent(
+                UUID.randomUUID().toString(), wallet.getId(), BTC, 10.00)
+        BlockFundsCommandEvent tooBigBlockEvent = new BlockFundsCommandEvent(
+                UUID.randomUUID().toString(), wallet.getId(), BTC, 100.00)
+        DepositFundsCommandEvent unknownTokenEvent = new DepositFundsCommandEvent(
+                UUID.randomUUID().toString(), wallet.getId(), "UNKNOWN", 1.00)
+        BlockFundsCommandEvent blockEvent = new BlockFundsCommandEvent(
+                UUID.randomUUID().toString(), wallet.getId(), BTC, 4.00)
+
+        when:
+        testHelper.sendWalletCommandEvents(depositEvent, tooBigBlockEvent, unknownTokenEvent, blockEvent)
+
+        then:
+        List<WalletEvent> walletEvents = testHelper.getNextWalletEvents(4)
+        walletEvents.collect({ it.getClass() }) == [FundsAddedEvent, ErrorEvent, ErrorEvent, FundsBlockedEvent]
+        (walletEvents[0] as FundsAddedEvent).id() == depositEvent.id()
+        (walletEvents[1] as ErrorEvent).commandId() == tooBigBlockEvent.id()
+        (walletEvents[2] as ErrorEvent).commandId() == unknownTokenEvent.id()
+        (walletEvents[3] as FundsBlockedEvent).id() == blockEvent.id()
+        (walletEvents[0] as FundsAddedEvent).wallet().balance() == [new FundSnapshot(BTC, 10.00, BigDecimal.ZERO)]
+        (walletEvents[3] as FundsBlockedEvent).wallet().balance() == [new FundSnapshot(BTC, 6.00, 4.00)]
+
+        and:
+        Wallet updatedWallet = testHelper.getWallet(wallet.getId())
+        updatedWallet.getLastExecutedCommandId().get() == blockEvent.id()
+        TestUtils.verifyFund(updatedWallet, BTC, 6.00, [(getFundLock(updatedWallet, BTC)): 4.00])
+
+        and:
+        testHelper.getExecutedCommandsCount() == 2
+        testHelper.verifyExecutedCommandIsMarkedAsSend(depositEvent.id(), wallet.getId())
+        testHelper.verifyExecutedCommandIsMarkedAsSend(blockEvent.id(), wallet.getId())
+    }
+
     def "should send previous command event and process new one when executed command missing"() {
         given:
         BigDecimal initialAmount = 11.11
@@ -409,6 +486,37 @@ class WalletCommandExecutionIntegrationTest extends BaseIntegrationTest {
                 "No $BTC funds to block")
     }
 
+    def "should execute commands on funds of token with scale"() {
+        given:
+        testHelper.initToken(USDC, 6)
+        Wallet wallet = testHelper.initWallet()
+
+        and:
+        DepositFundsCommandEvent depositEvent = new DepositFundsCommandEvent(
+                UUID.randomUUID().toString(), wallet.getId(), USDC, 10.00)
+        BlockFundsCommandEvent tooPreciseBlockEvent = new BlockFundsCommandEvent(
+                UUID.randomUUID().toString(), wallet.getId(), USDC, 0.0000001)
+        BlockFundsCommandEvent blockEvent = new BlockFundsCommandEvent(
+                UUID.randomUUID().toString(), wallet.getId(), USDC, 4.000001)
+
+        when:
+        testHelper.sendWalletCommandEvents(depositEvent, tooPreciseBlockEvent, blockEvent)
+
+        then:
+        List<WalletEvent> walletEvents = testHelper.getNextWalletEvents(3)
+        walletEvents.collect({ it.getClass() }) == [FundsAddedEvent, ErrorEvent, FundsBlockedEvent]
+        (walletEvents[1] as ErrorEvent).commandId() == tooPreciseBlockEvent.id()
+        FundSnapshot fundSnapshot = (walletEvents[2] as FundsBlockedEvent).wallet().balance()[0]
+        fundSnapshot.available() == 5.999999
+        fundSnapshot.blocked() == 4.000001
+
+        and:
+        Wallet updatedWallet = testHelper.getWallet(wallet.getId())
+        updatedWallet.getFunds()[USDC].getScale() == 6
+        TestUtils.verifyFund(updatedWallet, USDC, 5.999999, [(getFundLock(updatedWallet, USDC)): 4.000001])
+        updatedWallet.getFunds()[USDC].getTotalBlocked() == 4.000001
+    }
+
     private static String getFundLock(Wallet wallet, String token) {
         return wallet.funds[token].getBlocked().keySet().first()
     }
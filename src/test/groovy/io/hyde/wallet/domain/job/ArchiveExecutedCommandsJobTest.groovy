@@ -0,0 +1,112 @@
+package io.hyde.wallet.domain.job
+
+import io.hyde.wallet.application.ports.output.ExecutedCommandArchivePort
+import io.hyde.wallet.application.ports.output.ExecutedCommandPort
+import io.hyde.wallet.domain.model.ExecutedCommand
+import io.hyde.wallet.domain.model.ExecutedCommandsStorageStats
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.data.domain.PageRequest
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+
+class ArchiveExecutedCommandsJobTest extends Specification {
+
+    private Clock clock = Clock.fixed(Instant.now(), ZoneId.systemDefault())
+    private ExecutedCommandPort executedCommandPort = Mock()
+    private ExecutedCommandArchivePort executedCommandArchivePort = Mock()
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+    private int batchSize = 2
+    private Duration retention = Duration.ofDays(30)
+    private LocalDateTime createdDateBefore = LocalDateTime.now(clock).minus(retention)
+
+    def setup() {
+        executedCommandArchivePort.getStorageStats() >> Mono.just(new ExecutedCommandsStorageStats(3, 300, 100, 50))
+    }
+
+    def "should archive and remove send executed commands older than retention in batches"() {
+        given:
+        ArchiveExecutedCommandsJob job = createJob(true)
+        ExecutedCommand command1 = build("command1")
+        ExecutedCommand command2 = build("command2")
+        ExecutedCommand command3 = build("command3")
+
+        when:
+        job.archiveExecutedCommands()
+
+        then:
+        3 * executedCommandPort.findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(
+                true, createdDateBefore, PageRequest.of(0, batchSize)) >>>
+                [Flux.just(command1, command2), Flux.just(command3), Flux.empty()]
+        1 * executedCommandArchivePort.archive([command1, command2]) >> Mono.empty()
+        1 * executedCommandPort.deleteAllById(["command1", "command2"]) >> Mono.empty()
+        1 * executedCommandArchivePort.archive([command3]) >> Mono.empty()
+        1 * executedCommandPort.deleteAllById(["command3"]) >> Mono.empty()
+
+        and:
+        meterRegistry.get("executed.commands.removed").counter().count() == 3
+    }
+
+    def "should only remove executed commands when archive is disabled"() {
+        given:
+        ArchiveExecutedCommandsJob job = createJob(false)
+        ExecutedCommand command1 = build("command1")
+
+        when:
+        job.archiveExecutedCommands()
+
+        then:
+        2 * executedCommandPort.findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(
+                true, createdDateBefore, PageRequest.of(0, batchSize)) >>> [Flux.just(command1), Flux.empty()]
+        0 * executedCommandArchivePort.archive(_)
+        1 * executedCommandPort.deleteAllById(["command1"]) >> Mono.empty()
+    }
+
+    def "should not remove executed commands which failed to be archived"() {
+        given:
+        ArchiveExecutedCommandsJob job = createJob(true)
+        ExecutedCommand command1 = build("command1")
+
+        when:
+        job.archiveExecutedCommands()
+
+        then:
+        1 * executedCommandPort.findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(
+                true, createdDateBefore, PageRequest.of(0, batchSize)) >> Flux.just(command1)
+        1 * executedCommandArchivePort.archive([command1]) >> Mono.error(new RuntimeException("Exception for tests"))
+        0 * executedCommandPort.deleteAllById(_)
+        noExceptionThrown()
+    }
+
+    def "should report executed commands storage sizes"() {
+        given:
+        ArchiveExecutedCommandsJob job = createJob(true)
+        executedCommandPort.findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(_, _, _) >> Flux.empty()
+
+        when:
+        job.archiveExecutedCommands()
+
+        then:
+        meterRegistry.get("executed.commands.storage.data.size").gauge().value() == 300
+        meterRegistry.get("executed.commands.storage.size").gauge().value() == 100
+        meterRegistry.get("executed.commands.storage.index.size").gauge().value() == 50
+    }
+
+    private ArchiveExecutedCommandsJob createJob(boolean archive) {
+        return new ArchiveExecutedCommandsJob(
+                clock, retention, archive, batchSize, Duration.ofSeconds(1), executedCommandPort, executedCommandArchivePort, meterRegistry)
+    }
+
+    private ExecutedCommand build(String id) {
+        ExecutedCommand command = Mock()
+        command.getId() >> id
+        return command
+    }
+}
@@ -0,0 +1,177 @@
+package io.hyde.wallet.domain.job
+
+import io.hyde.wallet.application.ports.output.ExecutedCommandChangesPort
+import io.hyde.wallet.application.ports.output.ExecutedCommandPort
+import io.hyde.wallet.application.ports.output.ResumeTokenPort
+import io.hyde.wallet.application.ports.output.WalletEventsPort
+import io.hyde.wallet.domain.model.ExecutedCommand
+import io.hyde.wallet.domain.model.ExecutedCommandChange
+import io.hyde.wallet.domain.model.ResumeToken
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import net.javacrumbs.shedlock.core.LockProvider
+import net.javacrumbs.shedlock.core.SimpleLock
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+
+class ExecutedCommandsRelayJobTest extends Specification {
+
+    private Clock clock = Clock.fixed(Instant.now(), ZoneId.systemDefault())
+    private LockProvider lockProvider = Mock()
+    private SimpleLock lock = Mock()
+    private ResumeTokenPort resumeTokenPort = Mock()
+    private ExecutedCommandChangesPort executedCommandChangesPort = Mock()
+    private ExecutedCommandPort executedCommandPort = Mock()
+    private WalletEventsPort walletEventsPort = Mock()
+
+    @Subject
+    private ExecutedCommandsRelayJob job = new ExecutedCommandsRelayJob(
+            clock,
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(10),
+            100,
+            Duration.ofMillis(10),
+            4,
+            lockProvider,
+            resumeTokenPort,
+            executedCommandChangesPort,
+            executedCommandPort,
+            walletEventsPort,
+            new SimpleMeterRegistry())
+
+    def setup() {
+        lockProvider.lock(_) >> Optional.of(lock)
+    }
+
+    def "should send events of inserted executed commands and store last resume token"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+        ExecutedCommand command2 = build("command2", "wallet1")
+        ExecutedCommand command3 = build("command3", "wallet2")
+
+        and:
+        resumeTokenPort.findById(ExecutedCommandsRelayJob.RELAY_NAME) >> Mono.empty()
+        executedCommandChangesPort.watchNotSendInserts(Optional.empty()) >> Flux.just(
+                new ExecutedCommandChange(command1, "token1"),
+                new ExecutedCommandChange(command2, "token2"),
+                new ExecutedCommandChange(command3, "token3"))
+        executedCommandPort.existsByWalletIdAndSendAndCreatedDateLessThan(_, false, _) >> Mono.just(false)
+
+        when:
+        job.relaySession().block()
+
+        then:
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1, command2]) >> Flux.just(command1, command2)
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command3]) >> Flux.just(command3)
+        1 * executedCommandPort.markAllAsSendByIds({ it as Set == ["command1", "command2", "command3"] as Set }) >> Mono.just(3L)
+        1 * resumeTokenPort.save({ ResumeToken token -> token.getToken() == "token3" }) >> { args -> Mono.just(args[0]) }
+        1 * lock.unlock()
+    }
+
+    def "should continue from stored resume token"() {
+        given:
+        resumeTokenPort.findById(ExecutedCommandsRelayJob.RELAY_NAME) >>
+                Mono.just(ResumeToken.of(ExecutedCommandsRelayJob.RELAY_NAME, "token1"))
+
+        when:
+        job.relaySession().block()
+
+        then:
+        1 * executedCommandChangesPort.watchNotSendInserts(Optional.of("token1")) >> Flux.empty()
+        1 * lock.unlock()
+    }
+
+    def "should not send events of wallet with older not send commands"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+        ExecutedCommand command2 = build("command2", "wallet2")
+
+        and:
+        resumeTokenPort.findById(ExecutedCommandsRelayJob.RELAY_NAME) >> Mono.empty()
+        executedCommandChangesPort.watchNotSendInserts(Optional.empty()) >> Flux.just(
+                new ExecutedCommandChange(command1, "token1"),
+                new ExecutedCommandChange(command2, "token2"))
+        executedCommandPort.existsByWalletIdAndSendAndCreatedDateLessThan("wallet1", false, _) >> Mono.just(true)
+        executedCommandPort.existsByWalletIdAndSendAndCreatedDateLessThan("wallet2", false, _) >> Mono.just(false)
+
+        when:
+        job.relaySession().block()
+
+        then:
+        0 * walletEventsPort.sendEventsFromExecutedCommands([command1])
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command2]) >> Flux.just(command2)
+        1 * executedCommandPort.markAllAsSendByIds(["command2"]) >> Mono.just(1L)
+        1 * resumeTokenPort.save({ ResumeToken token -> token.getToken() == "token2" }) >> { args -> Mono.just(args[0]) }
+    }
+
+    def "should stop sending events of wallet after failure"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+        ExecutedCommand command2 = build("command2", "wallet1")
+        ExecutedCommand command3 = build("command3", "wallet2")
+
+        and:
+        resumeTokenPort.findById(ExecutedCommandsRelayJob.RELAY_NAME) >> Mono.empty()
+        executedCommandChangesPort.watchNotSendInserts(Optional.empty()) >> Flux.just(
+                new ExecutedCommandChange(command1, "token1"),
+                new ExecutedCommandChange(command2, "token2"),
+                new ExecutedCommandChange(command3, "token3"))
+        executedCommandPort.existsByWalletIdAndSendAndCreatedDateLessThan(_, false, _) >> Mono.just(false)
+
+        when:
+        job.relaySession().block()
+
+        then:
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1, command2]) >>
+                Flux.just(command1).concatWith(Flux.error(new RuntimeException("Exception for tests")))
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command3]) >> Flux.just(command3)
+        1 * executedCommandPort.markAllAsSendByIds({ it as Set == ["command1", "command3"] as Set }) >> Mono.just(2L)
+        1 * resumeTokenPort.save({ ResumeToken token -> token.getToken() == "token3" }) >> { args -> Mono.just(args[0]) }
+    }
+
+    def "should not store resume token when marking relayed commands as send fails"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+
+        and:
+        resumeTokenPort.findById(ExecutedCommandsRelayJob.RELAY_NAME) >> Mono.empty()
+        executedCommandChangesPort.watchNotSendInserts(Optional.empty()) >> Flux.just(new ExecutedCommandChange(command1, "token1"))
+        executedCommandPort.existsByWalletIdAndSendAndCreatedDateLessThan(_, false, _) >> Mono.just(false)
+
+        when:
+        job.relaySession().block()
+
+        then:
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1]) >> Flux.just(command1)
+        1 * executedCommandPort.markAllAsSendByIds(["command1"]) >> Mono.error(new RuntimeException("Exception for tests"))
+        0 * resumeTokenPort.save(_)
+        1 * lock.unlock()
+    }
+
+    def "should not watch executed commands when lock is held by other instance"() {
+        when:
+        job.relaySession().block()
+
+        then:
+        1 * lockProvider.lock(_) >> Optional.empty()
+        0 * executedCommandChangesPort.watchNotSendInserts(_)
+        0 * walletEventsPort._
+    }
+
+    private ExecutedCommand build(String commandId, String walletId) {
+        ExecutedCommand command = Mock()
+        command.getId() >> commandId
+        command.getCommandId() >> commandId
+        command.getWalletId() >> walletId
+        command.getCreatedDate() >> LocalDateTime.now(clock)
+        return command
+    }
+}
@@ -27,7 +27,7 @@ class ProcessMissingExecutedCommandsJobTest extends BaseIntegrationTest {
         testHelper.executeWithoutStoringCommand(walletWithNotStoredCommands, notStoredCommand)
 
         Wallet walletWithStoredCommands = testHelper.initWallet()
-        testHelper.executeAndStoreSendCommands(
+        walletWithStoredCommands = testHelper.executeAndStoreSendCommands(
                 walletWithStoredCommands,
                 new DepositFundsCommand(UUID.randomUUID().toString(), walletWithStoredCommands.getId(), BTC, 33.33))
 
@@ -53,5 +53,9 @@ class ProcessMissingExecutedCommandsJobTest extends BaseIntegrationTest {
         and:
         testHelper.getExecutedCommandsCount() == 3
         testHelper.verifyExecutedCommandIsMarkedAsSend(notStoredCommand.id(), walletWithNotStoredCommands.getId())
+
+        and:
+        testHelper.getWallet(walletWithNotStoredCommands.getId()).isLastExecutedCommandStored()
+        testHelper.getWallet(walletWithStoredCommands.getId()).isLastExecutedCommandStored()
     }
 }
@@ -3,6 +3,7 @@ package io.hyde.wallet.domain.job
 import io.hyde.wallet.application.ports.output.ExecutedCommandPort
 import io.hyde.wallet.application.ports.output.WalletEventsPort
 import io.hyde.wallet.domain.model.ExecutedCommand
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import org.springframework.data.domain.PageRequest
 import reactor.core.publisher.Flux
 import reactor.core.publisher.Mono
@@ -20,15 +21,25 @@ class SendExecutedCommandsEventsJobTest extends Specification {
     private Clock clock = Clock.fixed(Instant.now(), ZoneId.systemDefault())
     private ExecutedCommandPort executedCommandPort = Mock()
     private WalletEventsPort walletEventsPort = Mock()
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
 
     private int pageSize = 5
+    private int parallelism = 4
     private Duration jobTimeout = Duration.ofSeconds(1)
     private Duration eventsCreationDateDelay = Duration.ofSeconds(5)
     private LocalDateTime eventsDelayedCreationDate = LocalDateTime.now(clock).minus(eventsCreationDateDelay)
 
     @Subject
     private SendExecutedCommandsEventsJob job = new SendExecutedCommandsEventsJob(
-            clock, pageSize, eventsCreationDateDelay, jobTimeout, executedCommandPort, walletEventsPort)
+            clock, pageSize, eventsCreationDateDelay, jobTimeout, false, parallelism, executedCommandPort, walletEventsPort, meterRegistry)
+
+    @Subject
+    private SendExecutedCommandsEventsJob drainingJob = new SendExecutedCommandsEventsJob(
+            clock, pageSize, eventsCreationDateDelay, jobTimeout, true, parallelism, executedCommandPort, walletEventsPort, meterRegistry)
+
+    def setup() {
+        executedCommandPort.countBySend(false) >> Mono.just(0L)
+    }
 
     def "should send executed commands events"() {
         given:
@@ -45,15 +56,11 @@ class SendExecutedCommandsEventsJobTest extends Specification {
         job.sendExecutedCommandsEvents()
 
         then:
-        1 * walletEventsPort.sendEventFromExecutedCommand(command1) >> Mono.empty()
-        1 * command1.markAsSend()
-        1 * executedCommandPort.save(command1) >> Mono.just(command1)
-        1 * walletEventsPort.sendEventFromExecutedCommand(command2) >> Mono.empty()
-        1 * command2.markAsSend()
-        1 * executedCommandPort.save(command2) >> Mono.just(command2)
-        1 * walletEventsPort.sendEventFromExecutedCommand(command3) >> Mono.empty()
-        1 * command3.markAsSend()
-        1 * executedCommandPort.save(command3) >> Mono.just(command3)
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1]) >> Flux.just(command1)
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command2]) >> Flux.just(command2)
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command3]) >> Flux.just(command3)
+        1 * executedCommandPort.markAllAsSendByIds({ it as Set == ["command1", "command2", "command3"] as Set }) >> Mono.just(3L)
+        0 * executedCommandPort.save(_)
     }
 
     def "should stop sending events if any command fails within wallet id group"() {
@@ -72,18 +79,29 @@ class SendExecutedCommandsEventsJobTest extends Specification {
         job.sendExecutedCommandsEvents()
 
         then:
-        1 * walletEventsPort.sendEventFromExecutedCommand(command1) >> Mono.empty()
-        1 * command1.markAsSend()
-        1 * executedCommandPort.save(command1) >> Mono.error(new RuntimeException("Exception for tests"))
-        0 * walletEventsPort.sendEventFromExecutedCommand(command2) >> Mono.empty()
-        0 * command2.markAsSend()
-        0 * executedCommandPort.save(command2) >> Mono.just(command2)
-        1 * walletEventsPort.sendEventFromExecutedCommand(command3) >> Mono.empty()
-        1 * command3.markAsSend()
-        1 * executedCommandPort.save(command3) >> Mono.just(command3)
-        1 * walletEventsPort.sendEventFromExecutedCommand(command4) >> Mono.empty()
-        1 * command4.markAsSend()
-        1 * executedCommandPort.save(command4) >> Mono.just(command4)
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1, command2]) >> Flux.error(new RuntimeException("Exception for tests"))
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command3]) >> Flux.just(command3)
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command4]) >> Flux.just(command4)
+        1 * executedCommandPort.markAllAsSendByIds({ it as Set == ["command3", "command4"] as Set }) >> Mono.just(2L)
+    }
+
+    def "should mark commands acknowledged before failure within wallet id group as send"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+        ExecutedCommand command2 = build("command2", "wallet1")
+
+        and:
+        executedCommandPort.findAllBySendAndCreatedDateLessThanOrderByCreatedDateAsc(
+                false, eventsDelayedCreationDate, PageRequest.of(0, pageSize)) >>
+                Flux.fromIterable([command1, command2])
+
+        when:
+        job.sendExecutedCommandsEvents()
+
+        then:
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1, command2]) >>
+                Flux.just(command1).concatWith(Flux.error(new RuntimeException("Exception for tests")))
+        1 * executedCommandPort.markAllAsSendByIds(["command1"]) >> Mono.just(1L)
     }
 
     def "should stop sending events after timeout"() {
@@ -100,12 +118,114 @@ class SendExecutedCommandsEventsJobTest extends Specification {
         job.sendExecutedCommandsEvents()
 
         then:
-        1 * walletEventsPort.sendEventFromExecutedCommand(command1) >> Mono.delay(jobTimeout.plusSeconds(1)).then(Mono.just(command2))
-        0 * walletEventsPort.sendEventFromExecutedCommand(command2) >> Mono.empty()
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1, command2]) >>
+                Mono.delay(jobTimeout.plusSeconds(1)).thenMany(Flux.just(command1, command2))
+        0 * executedCommandPort.markAllAsSendByIds(_)
+    }
+
+    def "should send executed commands events until there are no more pages"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+        ExecutedCommand command2 = build("command2", "wallet1")
+        ExecutedCommand command3 = build("command3", "wallet2")
+
+        when:
+        drainingJob.sendExecutedCommandsEvents()
+
+        then:
+        3 * executedCommandPort.findAllBySendAndCreatedDateLessThanAndWalletIdNotInOrderByCreatedDateAsc(
+                false, eventsDelayedCreationDate, [] as Set, PageRequest.of(0, pageSize)) >>>
+                [Flux.fromIterable([command1, command2]), Flux.fromIterable([command3]), Flux.empty()]
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1, command2]) >> Flux.just(command1, command2)
+        1 * executedCommandPort.markAllAsSendByIds(["command1", "command2"]) >> Mono.just(2L)
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command3]) >> Flux.just(command3)
+        1 * executedCommandPort.markAllAsSendByIds(["command3"]) >> Mono.just(1L)
+
+        and:
+        meterRegistry.get("executed.commands.sent").counter().count() == 3
+    }
+
+    def "should skip wallets which failed when fetching next pages"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+        ExecutedCommand command2 = build("command2", "wallet2")
+
+        when:
+        drainingJob.sendExecutedCommandsEvents()
+
+        then:
+        1 * executedCommandPort.findAllBySendAndCreatedDateLessThanAndWalletIdNotInOrderByCreatedDateAsc(
+                false, eventsDelayedCreationDate, [] as Set, PageRequest.of(0, pageSize)) >> Flux.fromIterable([command1])
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1]) >> Flux.error(new RuntimeException("Exception for tests"))
+
+        then:
+        2 * executedCommandPort.findAllBySendAndCreatedDateLessThanAndWalletIdNotInOrderByCreatedDateAsc(
+                false, eventsDelayedCreationDate, ["wallet1"] as Set, PageRequest.of(0, pageSize)) >>>
+                [Flux.fromIterable([command2]), Flux.empty()]
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command2]) >> Flux.just(command2)
+        1 * executedCommandPort.markAllAsSendByIds(["command2"]) >> Mono.just(1L)
+    }
+
+    def "should stop sending executed commands events when marking them as send fails"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+
+        when:
+        drainingJob.sendExecutedCommandsEvents()
+
+        then:
+        1 * executedCommandPort.findAllBySendAndCreatedDateLessThanAndWalletIdNotInOrderByCreatedDateAsc(
+                false, eventsDelayedCreationDate, [] as Set, PageRequest.of(0, pageSize)) >> Flux.fromIterable([command1])
+        1 * walletEventsPort.sendEventsFromExecutedCommands([command1]) >> Flux.just(command1)
+        1 * executedCommandPort.markAllAsSendByIds(["command1"]) >> Mono.error(new RuntimeException("Exception for tests"))
+        noExceptionThrown()
+    }
+
+    def "should track backlog of not send executed commands"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+
+        and:
+        executedCommandPort.findAllBySendAndCreatedDateLessThanAndWalletIdNotInOrderByCreatedDateAsc(
+                false, eventsDelayedCreationDate, _, PageRequest.of(0, pageSize)) >>>
+                [Flux.fromIterable([command1]), Flux.empty()]
+        walletEventsPort.sendEventsFromExecutedCommands([command1]) >> Flux.just(command1)
+        executedCommandPort.markAllAsSendByIds(_) >> Mono.just(1L)
+
+        when:
+        drainingJob.sendExecutedCommandsEvents()
+
+        then:
+        1 * executedCommandPort.countBySend(false) >> Mono.just(3L)
+
+        and:
+        meterRegistry.get("executed.commands.backlog").gauge().value() == 2
+    }
+
+    def "should not overwrite backlog decrements with slow count"() {
+        given:
+        ExecutedCommand command1 = build("command1", "wallet1")
+
+        and:
+        executedCommandPort.findAllBySendAndCreatedDateLessThanAndWalletIdNotInOrderByCreatedDateAsc(
+                false, eventsDelayedCreationDate, _, PageRequest.of(0, pageSize)) >>>
+                [Flux.fromIterable([command1]), Flux.empty()]
+        walletEventsPort.sendEventsFromExecutedCommands([command1]) >> Flux.just(command1)
+        executedCommandPort.markAllAsSendByIds(_) >> Mono.just(1L)
+
+        when:
+        drainingJob.sendExecutedCommandsEvents()
+
+        then:
+        1 * executedCommandPort.countBySend(false) >> Mono.just(3L).delayElement(Duration.ofMillis(100))
+
+        and:
+        meterRegistry.get("executed.commands.backlog").gauge().value() == 2
     }
 
     private ExecutedCommand build(String commandId, String walletId) {
         ExecutedCommand command = Mock()
+        command.getId() >> commandId
         command.getCommandId() >> commandId
         command.getWalletId() >> walletId
         return command
@@ -0,0 +1,99 @@
+package io.hyde.wallet.domain.model
+
+import io.hyde.wallet.domain.model.command.BlockFundsCommand
+import io.hyde.wallet.domain.model.command.DepositFundsCommand
+import org.bson.Document
+import org.bson.RawBsonDocument
+import org.bson.codecs.DocumentCodec
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneId
+
+class ExecutedCommandTest extends Specification {
+
+    private static final String BTC = "BTC"
+    private static final Clock clock = Clock.fixed(Instant.now(), ZoneId.systemDefault())
+
+    def "should store only wallet state of last executed command"() {
+        given:
+        Wallet wallet = Wallet.forOwner(UUID.randomUUID().toString())
+        wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 33.33), clock)
+        wallet.execute(new BlockFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 11.11), clock)
+
+        when:
+        ExecutedCommand executedCommand = ExecutedCommand.fromLastExecutedCommand(wallet)
+
+        then:
+        executedCommand.getWalletState() == new WalletState(
+                wallet.getId(), wallet.getOwnerId(), [new WalletState.FundState(BTC, 22.22, 11.11)])
+        executedCommand.@walletSnapshot == null
+    }
+
+    def "should read wallet state from wallet snapshot of command stored by previous versions"() {
+        given:
+        Wallet wallet = Wallet.forOwner(UUID.randomUUID().toString())
+        wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 33.33), clock)
+
+        and:
+        ExecutedCommand executedCommand = new ExecutedCommand()
+        executedCommand.@walletSnapshot = wallet
+
+        expect:
+        executedCommand.getWalletState() == new WalletState(
+                wallet.getId(), wallet.getOwnerId(), [new WalletState.FundState(BTC, 33.33, BigDecimal.ZERO)])
+    }
+
+    def "should store executed command in less space than with wallet snapshot of the original wallet document"() {
+        given:
+        //Same shape as performance tests dataset, wallet with single fund and many executed commands
+        Wallet wallet = Wallet.forOwner(UUID.randomUUID().toString())
+        wallet.@id = UUID.randomUUID().toString()
+        100.times {
+            wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, BigDecimal.ONE), clock)
+        }
+
+        and:
+        ExecutedCommand executedCommand = ExecutedCommand.fromLastExecutedCommand(wallet)
+        ExecutedCommand originalExecutedCommand = ExecutedCommand.fromLastExecutedCommand(wallet)
+        originalExecutedCommand.@walletState = null
+        originalExecutedCommand.@walletSnapshot = wallet
+
+        when:
+        int size = bsonSize(toDocument(executedCommand))
+        int originalSize = bsonSize(withOriginalWalletSnapshot(toDocument(originalExecutedCommand)))
+
+        then:
+        size < originalSize
+    }
+
+    private static Document toDocument(ExecutedCommand executedCommand) {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext())
+        converter.afterPropertiesSet()
+        Document document = new Document()
+        converter.write(executedCommand, document)
+        return document
+    }
+
+    private static Document withOriginalWalletSnapshot(Document document) {
+        //Wallet snapshot is limited to fields of the original wallet document, without fields added to wallet since
+        //(e.g. recent commands ids window, lock tokens, total blocked and minor units of funds)
+        Document walletSnapshot = document.get("walletSnapshot", Document)
+        walletSnapshot.keySet().retainAll(["_id", "version", "ownerId", "lastExecutedCommandResult", "funds", "createdDate", "lastModifiedDate"])
+        walletSnapshot.get("funds", Document).values().each { Document fund ->
+            fund.keySet().retainAll(["available", "blocked"])
+            fund.putIfAbsent("available", "0")
+            fund.putIfAbsent("blocked", new Document())
+        }
+        return document
+    }
+
+    private static int bsonSize(Document document) {
+        //Size of document as written to executedCommand collection, before storage compression
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining()
+    }
+}
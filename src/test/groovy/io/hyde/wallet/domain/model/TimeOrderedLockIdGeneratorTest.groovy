@@ -0,0 +1,77 @@
+package io.hyde.wallet.domain.model
+
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneId
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class TimeOrderedLockIdGeneratorTest extends Specification {
+
+    private static final Instant NOW = Instant.parse("2025-03-01T10:15:30.123Z")
+
+    def "should generate ordered ids when sequence of millisecond is exhausted"() {
+        given:
+        TimeOrderedLockIdGenerator generator = new TimeOrderedLockIdGenerator(Clock.fixed(NOW, ZoneId.systemDefault()), 1)
+
+        when:
+        List<String> ids = (1..10_000).collect({ generator.nextLockId() })
+
+        then:
+        ids.every({ it.length() == 13 && it ==~ /[0-9A-Z]+/ })
+        ids.toSet().size() == ids.size()
+        ids == ids.toSorted()
+    }
+
+    def "should generate ordered ids when clock goes back"() {
+        given:
+        Clock clock = Mock()
+        clock.millis() >>> [NOW.toEpochMilli(), NOW.toEpochMilli() - 1000, NOW.toEpochMilli() + 1]
+        TimeOrderedLockIdGenerator generator = new TimeOrderedLockIdGenerator(clock, 1)
+
+        when:
+        List<String> ids = (1..3).collect({ generator.nextLockId() })
+
+        then:
+        ids.toSet().size() == 3
+        ids == ids.toSorted()
+    }
+
+    def "should generate different ids on different nodes at the same time"() {
+        given:
+        Clock clock = Clock.fixed(NOW, ZoneId.systemDefault())
+
+        expect:
+        new TimeOrderedLockIdGenerator(clock, 1).nextLockId() != new TimeOrderedLockIdGenerator(clock, 2).nextLockId()
+    }
+
+    def "should generate unique ids concurrently"() {
+        given:
+        TimeOrderedLockIdGenerator generator = new TimeOrderedLockIdGenerator(Clock.systemUTC(), 1)
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        List<String> ids = executor.invokeAll((1..4).collect({
+            { (1..10_000).collect({ generator.nextLockId() }) } as Callable<List<String>>
+        })).collectMany({ it.get() })
+
+        then:
+        ids.toSet().size() == 40_000
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def "should not create generator with node id out of range"() {
+        when:
+        new TimeOrderedLockIdGenerator(Clock.systemUTC(), nodeId)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        nodeId << [-1, TimeOrderedLockIdGenerator.MAX_NODE_ID + 1]
+    }
+}
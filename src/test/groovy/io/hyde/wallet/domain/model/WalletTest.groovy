@@ -16,12 +16,14 @@ import java.time.Clock
 import java.time.Instant
 import java.time.LocalDateTime
 import java.time.ZoneId
+import java.util.function.Function
 
 class WalletTest extends Specification {
 
     private static final String BTC = "BTC"
     private static final String ETH = "ETH"
     private static final Clock clock = Clock.fixed(Instant.now(), ZoneId.systemDefault())
+    private static final Function<String, Optional<Integer>> SCALES = { token -> token == BTC ? Optional.of(8) : Optional.empty() }
 
     def "should deposit funds to wallet"() {
         given:
@@ -196,6 +198,134 @@ class WalletTest extends Specification {
         TestUtils.verifyFund(wallet, BTC, 10.00, [(lockId): 1.11])
     }
 
+    def "should find locks of wallet stored without lock tokens"() {
+        given:
+        Wallet wallet = initWallet([(BTC): 11.11, (ETH): 2.22])
+        String btcLockId = blockFunds(wallet, BTC, 1.11)
+        String ethLockId = blockFunds(wallet, ETH, 1.00)
+        wallet.@lockTokens = null
+
+        when:
+        ReleaseFundsCommandResult releaseResult = wallet.execute(new ReleaseFundsCommand(
+                UUID.randomUUID().toString(), wallet.getId(), ethLockId), clock) as ReleaseFundsCommandResult
+        WithdrawFundsCommandResult withdrawResult = wallet.execute(new WithdrawFundsCommand(
+                UUID.randomUUID().toString(), wallet.getId(), btcLockId), clock) as WithdrawFundsCommandResult
+
+        then:
+        releaseResult.releasedFundsToken == ETH
+        withdrawResult.withdrawnFundsToken == BTC
+
+        and:
+        TestUtils.verifyFund(wallet, BTC, 10.00)
+        TestUtils.verifyFund(wallet, ETH, 2.22)
+        wallet.@lockTokens == [:]
+    }
+
+    def "should not find lock released in wallet copy"() {
+        given:
+        Wallet wallet = initWallet([(BTC): 11.11])
+        String lockId = blockFunds(wallet, BTC, 1.11)
+        Wallet copy = wallet.copy()
+
+        when:
+        copy.execute(new ReleaseFundsCommand(UUID.randomUUID().toString(), wallet.getId(), lockId), clock)
+
+        then:
+        TestUtils.verifyFund(copy, BTC, 11.11)
+        TestUtils.verifyFund(wallet, BTC, 10.00, [(lockId): 1.11])
+        wallet.@lockTokens == [(lockId): BTC]
+    }
+
+    def "should maintain total blocked funds"() {
+        given:
+        Wallet wallet = initWallet([(BTC): 11.11])
+        String lockId1 = blockFunds(wallet, BTC, 1.11)
+        String lockId2 = blockFunds(wallet, BTC, 2.00)
+        blockFunds(wallet, BTC, 3.00)
+
+        when:
+        wallet.execute(new ReleaseFundsCommand(UUID.randomUUID().toString(), wallet.getId(), lockId1), clock)
+        wallet.execute(new WithdrawFundsCommand(UUID.randomUUID().toString(), wallet.getId(), lockId2), clock)
+
+        then:
+        wallet.getFunds()[BTC].getTotalBlocked() == 3.00
+        wallet.getFunds()[BTC].@totalBlocked == 3.00
+    }
+
+    def "should fix total blocked funds not matching blocked funds when verified"() {
+        given:
+        Wallet wallet = initWallet([(BTC): 11.11, (ETH): 2.22])
+        blockFunds(wallet, BTC, 1.11)
+        blockFunds(wallet, ETH, 1.00)
+        wallet.getFunds()[BTC].@totalBlocked = 5.00
+        wallet.getFunds()[ETH].@totalBlocked = null
+
+        when:
+        wallet.verifyTotalBlocked()
+
+        then:
+        wallet.getFunds()[BTC].getTotalBlocked() == 1.11
+        wallet.getFunds()[ETH].getTotalBlocked() == 1.00
+    }
+
+    def "should keep funds of token with scale in minor units"() {
+        given:
+        Wallet wallet = initWallet()
+        wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 11.11), clock, SCALES, LockIdGenerator.RANDOM_UUID)
+        String lockId1 = blockFunds(wallet, BTC, 1.11)
+        String lockId2 = blockFunds(wallet, BTC, 2.00)
+
+        when:
+        ReleaseFundsCommandResult releaseResult = wallet.execute(new ReleaseFundsCommand(
+                UUID.randomUUID().toString(), wallet.getId(), lockId1), clock) as ReleaseFundsCommandResult
+
+        then:
+        releaseResult.releasedFundsAmount == 1.11
+        TestUtils.verifyFund(wallet, BTC, 9.11, [(lockId2): 2.00])
+        wallet.getFunds()[BTC].getTotalBlocked() == 2.00
+
+        and:
+        Wallet.Fund fund = wallet.getFunds()[BTC]
+        fund.getScale() == 8
+        fund.@availableUnits == 911_000_000L
+        fund.@blockedUnits == [(lockId2): 200_000_000L]
+        fund.@totalBlockedUnits == 200_000_000L
+        fund.@available == null
+        fund.@blocked == null
+    }
+
+    def "should not change funds of token with scale when amount exceeds scale"() {
+        given:
+        Wallet wallet = initWallet()
+        wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 11.11), clock, SCALES, LockIdGenerator.RANDOM_UUID)
+
+        when:
+        wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 0.000000001), clock)
+
+        then:
+        WalletCommandExecutionException exception = thrown(WalletCommandExecutionException)
+        exception.getMessage() == "Amount 0.000000001 exceeds precision or range of token funds"
+
+        and:
+        TestUtils.verifyFund(wallet, BTC, 11.11)
+    }
+
+    def "should not change funds of token with scale when amount overflows"() {
+        given:
+        Wallet wallet = initWallet()
+        wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 90_000_000_000.00), clock, SCALES, LockIdGenerator.RANDOM_UUID)
+
+        when:
+        wallet.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 10_000_000_000.00), clock)
+
+        then:
+        WalletCommandExecutionException exception = thrown(WalletCommandExecutionException)
+        exception.getMessage() == "Funds amount out of range"
+
+        and:
+        TestUtils.verifyFund(wallet, BTC, 90_000_000_000.00)
+    }
+
     def "should not execute command when last executed has same id"() {
         given:
         Wallet wallet = initWallet()
@@ -215,6 +345,41 @@ class WalletTest extends Specification {
         wallet.getLastExecutedCommandResult().get() == result2
     }
 
+    def "should remember recently executed commands"() {
+        given:
+        Wallet wallet = initWallet()
+
+        and:
+        DepositFundsCommand command = new DepositFundsCommand(
+                UUID.randomUUID().toString(), wallet.getId(), BTC, 11.11)
+
+        when:
+        wallet.execute(command, clock)
+
+        then:
+        wallet.wasCommandExecuted(command.id()) == Optional.of(true)
+        wallet.wasCommandExecuted(UUID.randomUUID().toString()) == Optional.of(false)
+    }
+
+    def "should not determine execution of commands older than recent commands window"() {
+        given:
+        Wallet wallet = initWallet()
+
+        and:
+        List<DepositFundsCommand> commands = (1..51).collect({
+            new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 1.11)
+        })
+
+        when:
+        commands.each({ wallet.execute(it, clock) })
+
+        then:
+        wallet.wasCommandExecuted(commands.first().id()) == Optional.empty()
+        wallet.wasCommandExecuted(commands[1].id()) == Optional.of(true)
+        wallet.wasCommandExecuted(commands.last().id()) == Optional.of(true)
+        wallet.wasCommandExecuted(UUID.randomUUID().toString()) == Optional.empty()
+    }
+
     private static Wallet initWallet(Map<String, BigDecimal> funds = [:]) {
         Wallet wallet = Wallet.forOwner(UUID.randomUUID().toString())
         funds.each { token, amount ->
@@ -0,0 +1,96 @@
+package io.hyde.wallet.domain.service
+
+import ch.qos.logback.classic.Logger
+import ch.qos.logback.classic.spi.ILoggingEvent
+import ch.qos.logback.core.read.ListAppender
+import io.hyde.wallet.domain.model.command.DepositFundsCommand
+import io.hyde.wallet.domain.model.command.WalletCommand
+import io.hyde.wallet.domain.service.CommandExecutionTrace.Outcome
+import org.slf4j.LoggerFactory
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+
+class CommandSummaryLoggerTest extends Specification {
+
+    private Logger logger = LoggerFactory.getLogger(CommandSummaryLogger.LOGGER_NAME) as Logger
+    private ListAppender<ILoggingEvent> appender = new ListAppender<>()
+
+    def setup() {
+        appender.start()
+        logger.addAppender(appender)
+    }
+
+    def cleanup() {
+        logger.detachAppender(appender)
+    }
+
+    def "should log single structured summary per command with outcome and stages timings"() {
+        given:
+        WalletCommand command1 = deposit("command1")
+        WalletCommand command2 = deposit("command2")
+        CommandExecutionTrace trace = new CommandExecutionTrace([command1, command2])
+        trace.timed(CommandExecutionTrace.LOAD_STAGE, Mono.just("wallet")).block()
+        trace.record(CommandExecutionTrace.EXECUTE_STAGE, System.nanoTime())
+        trace.outcome("command2", Outcome.REJECTED)
+        trace.finish(Outcome.EXECUTED)
+
+        when:
+        new CommandSummaryLogger(1.0).log(trace)
+
+        then:
+        appender.list.size() == 2
+        appender.list*.formattedMessage == ["Command processed", "Command processed"]
+
+        and:
+        Map<String, Object> summary = keyValues(appender.list[0])
+        summary.commandId == "command1"
+        summary.commandType == "DepositFundsCommand"
+        summary.walletId == "wallet1"
+        summary.outcome == Outcome.EXECUTED
+        summary.batchSize == 2
+        summary.keySet().containsAll(["totalMs", "loadMs", "executeMs"])
+
+        and:
+        keyValues(appender.list[1]).outcome == Outcome.REJECTED
+    }
+
+    def "should always log rejected and failed commands when summaries are sampled out"() {
+        given:
+        CommandExecutionTrace trace = new CommandExecutionTrace(
+                [deposit("command1"), deposit("command2"), deposit("command3")])
+        trace.outcome("command1", Outcome.DUPLICATE)
+        trace.outcome("command2", Outcome.REJECTED)
+        trace.finish(Outcome.EXECUTED)
+        CommandExecutionTrace failedTrace = new CommandExecutionTrace([deposit("command4")])
+        failedTrace.finish(Outcome.FAILED)
+
+        when:
+        CommandSummaryLogger commandSummaryLogger = new CommandSummaryLogger(0.0)
+        commandSummaryLogger.log(trace)
+        commandSummaryLogger.log(failedTrace)
+
+        then:
+        appender.list.collect { keyValues(it).commandId } == ["command2", "command4"]
+    }
+
+    def "should mark all commands as failed when processing failed"() {
+        given:
+        CommandExecutionTrace trace = new CommandExecutionTrace([deposit("command1"), deposit("command2")])
+        trace.outcome("command1", Outcome.EXECUTED)
+
+        when:
+        trace.finish(Outcome.FAILED)
+
+        then:
+        trace.getOutcome("command1") == Outcome.FAILED
+        trace.getOutcome("command2") == Outcome.FAILED
+    }
+
+    private static WalletCommand deposit(String id) {
+        return new DepositFundsCommand(id, "wallet1", "BTC", BigDecimal.ONE)
+    }
+
+    private static Map<String, Object> keyValues(ILoggingEvent event) {
+        return event.keyValuePairs.collectEntries { [(it.key): it.value] }
+    }
+}
@@ -0,0 +1,34 @@
+package io.hyde.wallet.domain.service
+
+import io.hyde.wallet.application.ports.output.ExecutedCommandPort
+import io.hyde.wallet.application.ports.output.WalletEventsPort
+import spock.lang.Specification
+
+class ExecutedCommandServiceTest extends Specification {
+
+    private ExecutedCommandPort executedCommandPort = Stub()
+    private WalletEventsPort walletEventsPort = Stub()
+
+    def "should fail when relay is enabled in exactly once mode"() {
+        when:
+        new ExecutedCommandService(true, true, executedCommandPort, walletEventsPort)
+
+        then:
+        IllegalStateException exception = thrown()
+        exception.message == "Executed commands relay can't be enabled in exactly once mode"
+    }
+
+    def "should allow relay or exactly once mode separately"() {
+        when:
+        new ExecutedCommandService(relayEnabled, exactlyOnceEnabled, executedCommandPort, walletEventsPort)
+
+        then:
+        noExceptionThrown()
+
+        where:
+        relayEnabled | exactlyOnceEnabled
+        true         | false
+        false        | true
+        false        | false
+    }
+}
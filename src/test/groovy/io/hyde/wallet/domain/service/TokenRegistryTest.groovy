@@ -0,0 +1,90 @@
+package io.hyde.wallet.domain.service
+
+import io.hyde.wallet.application.ports.output.TokenPort
+import io.hyde.wallet.domain.model.Token
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+import spock.lang.Subject
+
+class TokenRegistryTest extends Specification {
+
+    private TokenPort tokenPort = Mock()
+
+    @Subject
+    private TokenRegistry tokenRegistry = new TokenRegistry(tokenPort)
+
+    def "should not query database for refreshed token"() {
+        given:
+        tokenPort.findAll() >> Flux.just(Token.ofName("BTC"), Token.ofName("ETH"))
+        tokenRegistry.refresh().block()
+
+        when:
+        boolean btcExists = tokenRegistry.exists("BTC").block()
+        boolean ethExists = tokenRegistry.exists("ETH").block()
+
+        then:
+        btcExists
+        ethExists
+        0 * tokenPort.findByName(_)
+    }
+
+    def "should not query database for registered token"() {
+        given:
+        tokenRegistry.register(Token.ofName("BTC"))
+
+        when:
+        boolean exists = tokenRegistry.exists("BTC").block()
+
+        then:
+        exists
+        0 * tokenPort.findByName(_)
+    }
+
+    def "should query database only once for token missing in registry"() {
+        when:
+        boolean firstCheck = tokenRegistry.exists("BTC").block()
+        boolean secondCheck = tokenRegistry.exists("BTC").block()
+
+        then:
+        firstCheck
+        secondCheck
+        1 * tokenPort.findByName("BTC") >> Mono.just(Token.ofName("BTC"))
+    }
+
+    def "should always query database for not existing token"() {
+        when:
+        boolean firstCheck = tokenRegistry.exists("UNKNOWN").block()
+        boolean secondCheck = tokenRegistry.exists("UNKNOWN").block()
+
+        then:
+        !firstCheck
+        !secondCheck
+        2 * tokenPort.findByName("UNKNOWN") >> Mono.empty()
+    }
+
+    def "should return scale of registered token"() {
+        given:
+        tokenPort.findAll() >> Flux.just(Token.of("BTC", 8), Token.ofName("ETH"))
+        tokenRegistry.refresh().block()
+
+        expect:
+        tokenRegistry.getScale("BTC") == Optional.of(8)
+        tokenRegistry.getScale("ETH") == Optional.empty()
+        tokenRegistry.getScale("UNKNOWN") == Optional.empty()
+    }
+
+    def "should keep registered tokens when refresh fails"() {
+        given:
+        tokenRegistry.register(Token.ofName("BTC"))
+        tokenPort.findAll() >> Flux.error(new RuntimeException("Exception for tests"))
+
+        when:
+        tokenRegistry.refresh().block()
+        boolean exists = tokenRegistry.exists("BTC").block()
+
+        then:
+        exists
+        0 * tokenPort.findByName(_)
+    }
+}
@@ -0,0 +1,109 @@
+package io.hyde.wallet.domain.service
+
+import io.hyde.wallet.application.ports.output.ExecutedCommandPort
+import io.hyde.wallet.application.ports.output.TokenPort
+import io.hyde.wallet.application.ports.output.WalletCachePort
+import io.hyde.wallet.application.ports.output.WalletEventsPort
+import io.hyde.wallet.application.ports.output.WalletPort
+import io.hyde.wallet.domain.model.ExecutedCommand
+import io.hyde.wallet.domain.model.LockIdGenerator
+import io.hyde.wallet.domain.model.Token
+import io.hyde.wallet.domain.model.Wallet
+import io.hyde.wallet.domain.model.command.DepositFundsCommand
+import org.springframework.transaction.reactive.TransactionalOperator
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneId
+
+//Database round trips of processing single command, each interaction with wallet or executed command port is one of them
+class WalletServiceTest extends Specification {
+
+    private static final String BTC = "BTC"
+    private static final String WALLET_ID = "wallet1"
+    private static final Clock clock = Clock.fixed(Instant.now(), ZoneId.systemDefault())
+
+    private WalletPort walletPort = Mock()
+    private WalletCachePort walletCachePort = Mock()
+    private WalletEventsPort walletEventsPort = Mock()
+    private ExecutedCommandPort executedCommandPort = Mock()
+    private TokenRegistry tokenRegistry = new TokenRegistry(Stub(TokenPort))
+
+    @Subject
+    private WalletService walletService = new WalletService(
+            false,
+            clock,
+            LockIdGenerator.RANDOM_UUID,
+            tokenRegistry,
+            Stub(OwnerWalletsLimiter),
+            walletPort,
+            walletCachePort,
+            walletEventsPort,
+            new ExecutedCommandService(false, false, executedCommandPort, walletEventsPort),
+            Stub(TransactionalOperator),
+            new CommandSummaryLogger(1.0))
+
+    def setup() {
+        tokenRegistry.register(Token.ofName(BTC))
+    }
+
+    def "should process command for cached wallet with one executed commands query when it's older than recent commands"() {
+        given:
+        Wallet wallet = initWallet(51)
+        walletCachePort.get(WALLET_ID) >> Optional.of(wallet)
+        DepositFundsCommand command = deposit()
+
+        when:
+        walletService.process(command).block()
+
+        then:
+        1 * executedCommandPort.findAllByWalletIdAndCommandIdIn(WALLET_ID, [command.id()]) >> Flux.empty()
+        1 * executedCommandPort.existsByWalletIdAndSend(WALLET_ID, false) >> Mono.just(false)
+        1 * walletPort.save(wallet) >> Mono.just(wallet)
+        1 * executedCommandPort.save(_) >> { ExecutedCommand executedCommand -> Mono.just(executedCommand) }
+        1 * walletPort.markLastExecutedCommandAsStored(WALLET_ID, _) >> Mono.just(1L)
+        1 * walletEventsPort.sendEventFromExecutedCommand(_) >> Mono.empty()
+        1 * executedCommandPort.markAsSendById(_) >> Mono.just(1L)
+        0 * walletPort._
+        0 * executedCommandPort._
+    }
+
+    def "should process command for wallet loaded from database without executed commands query when it's in recent commands"() {
+        given:
+        Wallet wallet = initWallet(1)
+        walletCachePort.get(WALLET_ID) >> Optional.empty()
+        DepositFundsCommand command = deposit()
+
+        when:
+        walletService.process(command).block()
+
+        then:
+        1 * walletPort.findById(WALLET_ID) >> Mono.just(wallet)
+        1 * executedCommandPort.existsByWalletIdAndSend(WALLET_ID, false) >> Mono.just(false)
+        1 * walletPort.save(wallet) >> Mono.just(wallet)
+        1 * executedCommandPort.save(_) >> { ExecutedCommand executedCommand -> Mono.just(executedCommand) }
+        1 * walletPort.markLastExecutedCommandAsStored(WALLET_ID, _) >> Mono.just(1L)
+        1 * walletEventsPort.sendEventFromExecutedCommand(_) >> Mono.empty()
+        1 * executedCommandPort.markAsSendById(_) >> Mono.just(1L)
+        0 * walletPort._
+        0 * executedCommandPort._
+    }
+
+    private static Wallet initWallet(int executedCommands) {
+        //More executed commands than the window of recent commands ids holds makes it incomplete
+        Wallet wallet = Wallet.forOwner(UUID.randomUUID().toString())
+        wallet.@id = WALLET_ID
+        wallet.@version = executedCommands
+        executedCommands.times { wallet.execute(deposit(), clock) }
+        wallet.markLastExecutedCommandAsStored()
+        return wallet
+    }
+
+    private static DepositFundsCommand deposit() {
+        return new DepositFundsCommand(UUID.randomUUID().toString(), WALLET_ID, BTC, BigDecimal.ONE)
+    }
+}
@@ -0,0 +1,216 @@
+package io.hyde.wallet.infrastructure.adapters.input.messaging.listener
+
+import io.hyde.wallet.application.ports.input.ProcessWalletCommandUseCase
+import io.hyde.wallet.domain.model.command.WalletCommand
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.DepositFundsCommandEvent
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WalletCommandEvent
+import io.hyde.wallet.utils.validation.AnnotationProcessingValidator
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.common.TopicPartition
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate
+import org.springframework.validation.BeanPropertyBindingResult
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.core.scheduler.Schedulers
+import reactor.kafka.receiver.ReceiverOffset
+import reactor.kafka.receiver.ReceiverRecord
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+class KafkaWalletCommandEventsReactiveListenerTest extends Specification {
+
+    private static final String DLT = "wallet-commands-dlt"
+
+    private AnnotationProcessingValidator annotationProcessingValidator = Stub()
+    private ProcessWalletCommandUseCase processWalletCommandUseCase = Mock()
+    private ReactiveKafkaProducerTemplate<String, WalletCommandEvent> dltProducer = Mock()
+    private PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    private List<String> processedCommandIds = new CopyOnWriteArrayList<>()
+    private List<String> dltCommandIds = new CopyOnWriteArrayList<>()
+    private List<Long> acknowledgedOffsets = new CopyOnWriteArrayList<>()
+
+    def setup() {
+        annotationProcessingValidator.validate(_) >> { args -> new BeanPropertyBindingResult(args[0], "event") }
+        dltProducer.send(DLT, _, _) >> { args ->
+            dltCommandIds.add((args[2] as WalletCommandEvent).id())
+            return Mono.empty()
+        }
+    }
+
+    def "should keep processing other wallets while failed wallet's records are retried"() {
+        given:
+        boolean failed = false
+        processWalletCommandUseCase.process(_) >> { WalletCommand command ->
+            processedCommandIds.add(command.id())
+            if (command.id() == "command1" && !failed) {
+                failed = true
+                return Mono.error(new RuntimeException("Exception for tests"))
+            }
+            return Mono.empty()
+        }
+
+        when:
+        createListener(true, 3, [
+                record("wallet1", "command1", 0),
+                record("wallet1", "command2", 1),
+                record("wallet2", "command3", 2)]).receive()
+
+        then:
+        conditions.eventually {
+            assert processedCommandIds == ["command1", "command3", "command1", "command2"]
+            assert acknowledgedOffsets as Set == [0L, 1L, 2L] as Set
+        }
+        dltCommandIds.isEmpty()
+    }
+
+    def "should send record to DLT after retries of parked record are exhausted and process next records of the wallet"() {
+        given:
+        processWalletCommandUseCase.process(_) >> { WalletCommand command ->
+            processedCommandIds.add(command.id())
+            return command.id() == "command1" ? Mono.error(new RuntimeException("Exception for tests")) : Mono.empty()
+        }
+
+        when:
+        createListener(true, 1, [
+                record("wallet1", "command1", 0),
+                record("wallet1", "command2", 1)]).receive()
+
+        then:
+        conditions.eventually {
+            assert dltCommandIds == ["command1"]
+            assert processedCommandIds.findAll { it == "command2" }.size() == 1
+            assert acknowledgedOffsets as Set == [0L, 1L] as Set
+        }
+        processedCommandIds.indexOf("command2") > processedCommandIds.lastIndexOf("command1")
+    }
+
+    def "should drop parked records of revoked partition without retrying them"() {
+        given:
+        KafkaWalletCommandEventsReactiveListener listener
+        processWalletCommandUseCase.process(_) >> { WalletCommand command ->
+            processedCommandIds.add(command.id())
+            if (command.id() == "command3") {
+                //command1 is parked and command2 waits behind it by now, lane processes records one by one
+                listener.onRevoked([new TopicPartition("wallet-commands", 0)])
+            }
+            return command.id() == "command1" ? Mono.error(new RuntimeException("Exception for tests")) : Mono.empty()
+        }
+        listener = createListener(true, 3, [
+                record("wallet1", "command1", 0),
+                record("wallet1", "command2", 1),
+                record("wallet2", "command3", 2)])
+
+        when:
+        listener.receive()
+
+        then:
+        conditions.eventually {
+            assert acknowledgedOffsets == [2L]
+        }
+
+        when:
+        //Give dropped retry enough time to fire if it was not stopped
+        Thread.sleep(500)
+
+        then:
+        processedCommandIds == ["command1", "command3"]
+        acknowledgedOffsets == [2L]
+        dltCommandIds.isEmpty()
+    }
+
+    def "should send record to DLT after retries are exhausted when retrying blocks consumption"() {
+        given:
+        processWalletCommandUseCase.process(_) >> { WalletCommand command ->
+            processedCommandIds.add(command.id())
+            return Mono.error(new RuntimeException("Exception for tests"))
+        }
+
+        when:
+        createListener(false, 1, [record("wallet1", "command1", 0)]).receive()
+
+        then:
+        conditions.eventually {
+            assert dltCommandIds == ["command1"]
+            assert acknowledgedOffsets == [0L]
+        }
+        processedCommandIds == ["command1", "command1"]
+    }
+
+    def "should retry sending record to DLT until it's sent and acknowledge it only then"() {
+        given:
+        AtomicInteger dltSends = new AtomicInteger()
+        processWalletCommandUseCase.process(_) >> Mono.error(new RuntimeException("Exception for tests"))
+
+        when:
+        createListener(false, 0, [record("wallet1", "command1", 0)]).receive()
+
+        then:
+        conditions.eventually {
+            assert acknowledgedOffsets == [0L]
+        }
+        3 * dltProducer.send(DLT, _, _) >> {
+            dltSends.incrementAndGet() < 3 ? Mono.error(new RuntimeException("Exception for tests")) : Mono.empty()
+        }
+    }
+
+    def "should process records of each receiver independently"() {
+        given:
+        processWalletCommandUseCase.process(_) >> { WalletCommand command ->
+            processedCommandIds.add(command.id())
+            return command.id() == "command1" ? Mono.delay(Duration.ofMillis(500)).then() : Mono.empty()
+        }
+
+        when:
+        createReceiversListener([
+                receiver([record("wallet1", "command1", 0)]),
+                receiver([record("wallet2", "command2", 1)])]).receive()
+
+        then:
+        conditions.eventually {
+            assert acknowledgedOffsets == [1L, 0L]
+        }
+    }
+
+    private KafkaWalletCommandEventsReactiveListener createListener(boolean nonBlockingRetry,
+                                                                    int retryCount,
+                                                                    List<ReceiverRecord<String, WalletCommandEvent>> records) {
+        return createReceiversListener([Flux.fromIterable(records).concatWith(Flux.never())], nonBlockingRetry, retryCount)
+    }
+
+    private KafkaWalletCommandEventsReactiveListener createReceiversListener(List<Flux<ReceiverRecord<String, WalletCommandEvent>>> receivers,
+                                                                             boolean nonBlockingRetry = false,
+                                                                             int retryCount = 1) {
+        return new KafkaWalletCommandEventsReactiveListener(
+                Duration.ofSeconds(5),
+                retryCount,
+                Duration.ofMillis(50),
+                nonBlockingRetry,
+                1,
+                1,
+                Duration.ofMillis(10),
+                receivers,
+                annotationProcessingValidator,
+                processWalletCommandUseCase,
+                DLT,
+                dltProducer)
+    }
+
+    private static Flux<ReceiverRecord<String, WalletCommandEvent>> receiver(List<ReceiverRecord<String, WalletCommandEvent>> records) {
+        //Each receiver emits records on its own thread, like poll loop of separate consumer
+        return Flux.fromIterable(records).concatWith(Flux.never()).publishOn(Schedulers.newBoundedElastic(1, Integer.MAX_VALUE, "receiver"))
+    }
+
+    private ReceiverRecord<String, WalletCommandEvent> record(String walletId, String commandId, long offset) {
+        ReceiverOffset receiverOffset = Stub()
+        receiverOffset.offset() >> offset
+        receiverOffset.topicPartition() >> new TopicPartition("wallet-commands", 0)
+        receiverOffset.acknowledge() >> { acknowledgedOffsets.add(offset) }
+        WalletCommandEvent event = new DepositFundsCommandEvent(commandId, walletId, "BTC", BigDecimal.ONE)
+        return new ReceiverRecord<>(new ConsumerRecord<>("wallet-commands", 0, offset, walletId, event), receiverOffset)
+    }
+}
@@ -0,0 +1,166 @@
+package io.hyde.wallet.infrastructure.adapters.input.messaging.listener
+
+import io.hyde.wallet.application.ports.input.ProcessWalletCommandUseCase
+import io.hyde.wallet.domain.model.command.WalletCommand
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.DepositFundsCommandEvent
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WalletCommandEvent
+import io.hyde.wallet.infrastructure.adapters.input.messaging.listener.KafkaWalletCommandEventsTransactionalListener.TransactionalReceiver
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.producer.WalletEventsTransaction
+import io.hyde.wallet.utils.validation.AnnotationProcessingValidator
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate
+import org.springframework.validation.BeanPropertyBindingResult
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.kafka.sender.KafkaSender
+import reactor.kafka.sender.TransactionManager
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+class KafkaWalletCommandEventsTransactionalListenerTest extends Specification {
+
+    private static final String DLT = "wallet-commands-dlt"
+
+    private AnnotationProcessingValidator annotationProcessingValidator = Stub()
+    private ProcessWalletCommandUseCase processWalletCommandUseCase = Mock()
+    private ReactiveKafkaProducerTemplate<String, WalletCommandEvent> dltProducer = Mock()
+    private ReactiveKafkaConsumerTemplate<String, WalletCommandEvent> consumer = Mock()
+    private KafkaSender<String, WalletEvent> sender = Stub()
+    private TransactionManager transactionManager = Stub()
+    private PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    private List<String> processedCommandIds = new CopyOnWriteArrayList<>()
+    private List<String> dltCommandIds = new CopyOnWriteArrayList<>()
+    private AtomicInteger commits = new AtomicInteger()
+    private AtomicInteger aborts = new AtomicInteger()
+
+    def setup() {
+        annotationProcessingValidator.validate(_) >> { args -> new BeanPropertyBindingResult(args[0], "event") }
+        sender.transactionManager() >> transactionManager
+        transactionManager.commit() >> Mono.fromRunnable { commits.incrementAndGet() }
+        transactionManager.abort() >> Mono.fromRunnable { aborts.incrementAndGet() }
+    }
+
+    def "should commit transaction after each processed batch"() {
+        given:
+        consumer.receiveExactlyOnce(transactionManager) >> Flux.just(
+                Flux.just(record("wallet1", "command1", 0), record("wallet1", "command2", 1)),
+                Flux.just(record("wallet2", "command3", 2)))
+                .concatWith(Flux.never())
+        processWalletCommandUseCase.process(_) >> { WalletCommand command ->
+            processedCommandIds.add(command.id())
+            return Mono.empty()
+        }
+
+        when:
+        createListener().receive()
+
+        then:
+        conditions.eventually {
+            assert processedCommandIds == ["command1", "command2", "command3"]
+            assert commits.get() == 2
+        }
+        aborts.get() == 0
+        0 * processWalletCommandUseCase.markExecutedCommandsAsSend(_)
+    }
+
+    def "should retry marking executed commands as send until it succeeds before next batch is committed"() {
+        given:
+        List<List<Object>> markings = new CopyOnWriteArrayList<>()
+        consumer.receiveExactlyOnce(transactionManager) >> Flux.just(
+                Flux.just(record("wallet1", "command1", 0)),
+                Flux.just(record("wallet2", "command2", 1)))
+                .concatWith(Flux.never())
+        processWalletCommandUseCase.process(_) >> { WalletCommand command ->
+            //Event of the command is sent in transaction passed in context
+            return Mono.deferContextual { context ->
+                context.get(WalletEventsTransaction).sentExecutedCommandIds.add(command.id())
+                return Mono.empty()
+            }
+        }
+        processWalletCommandUseCase.markExecutedCommandsAsSend(_) >> { Collection<String> ids ->
+            //Commits made by the time of each marking attempt are recorded as well
+            markings.add([ids as Set, commits.get()])
+            return markings.size() == 1 ? Mono.error(new RuntimeException("Exception for tests")) : Mono.empty()
+        }
+
+        when:
+        createListener().receive()
+
+        then:
+        conditions.eventually {
+            assert markings == [[["command1"] as Set, 1], [["command1"] as Set, 1], [["command2"] as Set, 2]]
+        }
+        aborts.get() == 0
+    }
+
+    def "should send record which can't be processed to DLT and commit the batch"() {
+        given:
+        consumer.receiveExactlyOnce(transactionManager) >> Flux.just(Flux.just(record("wallet1", "command1", 0)))
+                .concatWith(Flux.never())
+        processWalletCommandUseCase.process(_) >> Mono.error(new RuntimeException("Exception for tests"))
+        dltProducer.send(DLT, _, _) >> { args ->
+            dltCommandIds.add((args[2] as WalletCommandEvent).id())
+            return Mono.empty()
+        }
+
+        when:
+        createListener().receive()
+
+        then:
+        conditions.eventually {
+            assert dltCommandIds == ["command1"]
+            assert commits.get() == 1
+        }
+        aborts.get() == 0
+    }
+
+    def "should abort transaction and receive batch again when record can't be sent to DLT"() {
+        given:
+        AtomicInteger subscriptions = new AtomicInteger()
+        consumer.receiveExactlyOnce(transactionManager) >> Flux.defer {
+            subscriptions.incrementAndGet() == 1
+                    ? Flux.just(Flux.just(record("wallet1", "command1", 0)))
+                    : Flux.just(Flux.just(record("wallet1", "command2", 0)))
+        }.concatWith(Flux.never())
+        processWalletCommandUseCase.process(_) >> { WalletCommand command ->
+            processedCommandIds.add(command.id())
+            return command.id() == "command1" ? Mono.error(new RuntimeException("Exception for tests")) : Mono.empty()
+        }
+        dltProducer.send(DLT, _, _) >> Mono.error(new RuntimeException("Exception for tests"))
+
+        when:
+        createListener().receive()
+
+        then:
+        conditions.eventually {
+            assert aborts.get() == 1
+            assert processedCommandIds.contains("command2")
+            assert commits.get() == 1
+        }
+    }
+
+    private KafkaWalletCommandEventsTransactionalListener createListener() {
+        return new KafkaWalletCommandEventsTransactionalListener(
+                Duration.ofSeconds(5),
+                1,
+                Duration.ofMillis(50),
+                2,
+                [new TransactionalReceiver(consumer, sender)],
+                annotationProcessingValidator,
+                processWalletCommandUseCase,
+                DLT,
+                dltProducer)
+    }
+
+    private static ConsumerRecord<String, WalletCommandEvent> record(String walletId, String commandId, long offset) {
+        WalletCommandEvent event = new DepositFundsCommandEvent(commandId, walletId, "BTC", BigDecimal.ONE)
+        return new ConsumerRecord<>("wallet-commands", 0, offset, walletId, event)
+    }
+}
@@ -23,16 +23,16 @@ class TokenControllerTest extends BaseIntegrationTest {
                 .returnResult(TokenDto.class)
                 .getResponseBody()
                 .as(tokensFlux -> StepVerifier.create(tokensFlux))
-                .expectNext(new TokenDto(token1.getName()))
-                .expectNext(new TokenDto(token2.getName()))
-                .expectNext(new TokenDto(token3.getName()))
+                .expectNext(new TokenDto(token1.getName(), null))
+                .expectNext(new TokenDto(token2.getName(), null))
+                .expectNext(new TokenDto(token3.getName(), null))
                 .expectComplete()
                 .verify()
     }
 
     def "should create token when request is valid"() {
         given:
-        CreateTokenRequest request = new CreateTokenRequest("BTC")
+        CreateTokenRequest request = new CreateTokenRequest("BTC", null)
 
         expect:
         performCreateToken(request)
@@ -52,12 +52,29 @@ class TokenControllerTest extends BaseIntegrationTest {
         createdToken.getLastModifiedDate() != null
     }
 
+    def "should create token with scale"() {
+        given:
+        CreateTokenRequest request = new CreateTokenRequest("BTC", 8)
+
+        expect:
+        performCreateToken(request)
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath('$.name').isEqualTo("BTC")
+                .jsonPath('$.scale').isEqualTo(8)
+
+        and:
+        List<Token> tokens = testHelper.getAllTokens()
+        tokens.size() == 1
+        tokens[0].getScale() == 8
+    }
+
     def "should not create token when already exists for name"() {
         given:
         testHelper.initToken("BTC")
 
         and:
-        CreateTokenRequest request = new CreateTokenRequest("BTC")
+        CreateTokenRequest request = new CreateTokenRequest("BTC", null)
 
         expect:
         performCreateToken(request)
@@ -70,6 +87,18 @@ class TokenControllerTest extends BaseIntegrationTest {
         testHelper.getAllTokensCount() == 1
     }
 
+    def "should not create token with scale out of range"() {
+        given:
+        CreateTokenRequest request = new CreateTokenRequest("ETH", 18)
+
+        expect:
+        performCreateToken(request)
+                .expectStatus().isBadRequest()
+
+        and:
+        testHelper.getAllTokensCount() == 0
+    }
+
     private ResponseSpec performCreateToken(CreateTokenRequest request) {
         webTestClient.post()
                 .uri(TokenController.BASE_URL)
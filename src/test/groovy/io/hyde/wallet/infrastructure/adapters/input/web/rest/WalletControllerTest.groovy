@@ -10,7 +10,16 @@ import io.hyde.wallet.infrastructure.adapters.input.web.rest.response.WalletDto.
 import org.hamcrest.Matchers
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.beans.factory.annotation.Value
+import org.springframework.http.HttpStatus
+import org.springframework.http.HttpStatusCode
+import org.springframework.http.MediaType
 import org.springframework.test.web.reactive.server.WebTestClient.ResponseSpec
+import reactor.core.publisher.Flux
+import reactor.core.publisher.Mono
+import reactor.core.scheduler.Schedulers
+import reactor.test.StepVerifier
+
+import java.time.Duration
 
 class WalletControllerTest extends BaseIntegrationTest {
 
@@ -59,6 +68,47 @@ class WalletControllerTest extends BaseIntegrationTest {
                 .jsonPath('$.totalElements').isEqualTo(2)
     }
 
+    def "should return wallets pages by cursor"() {
+        given:
+        List<Wallet> wallets = (1..3).collect({ testHelper.initWallet() })
+
+        expect:
+        performGetWalletsByCursor(null, 2)
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath('$.content').value(Matchers.hasSize(2))
+                .jsonPath('$.content[0]').isEqualTo(WalletDto.from(wallets[0]))
+                .jsonPath('$.content[1]').isEqualTo(WalletDto.from(wallets[1]))
+                .jsonPath('$.nextCursor').isEqualTo(wallets[1].getId())
+
+        and:
+        performGetWalletsByCursor(wallets[1].getId(), 2)
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath('$.content').value(Matchers.hasSize(1))
+                .jsonPath('$.content[0]').isEqualTo(WalletDto.from(wallets[2]))
+                .jsonPath('$.nextCursor').isEmpty()
+    }
+
+    def "should stream all wallets after given cursor"() {
+        given:
+        List<Wallet> wallets = (1..3).collect({ testHelper.initWallet() })
+
+        expect:
+        webTestClient.get()
+                .uri("${WalletController.BASE_URL}/stream?after={after}", wallets[0].getId())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(WalletDto.class)
+                .getResponseBody()
+                .as(walletsFlux -> StepVerifier.create(walletsFlux))
+                .expectNext(WalletDto.from(wallets[1]))
+                .expectNext(WalletDto.from(wallets[2]))
+                .expectComplete()
+                .verify()
+    }
+
     def "should return wallet by id when found"() {
         given:
         Wallet wallet = testHelper.initWallet()
@@ -134,12 +184,44 @@ class WalletControllerTest extends BaseIntegrationTest {
         testHelper.getAllWalletsCount() == walletsLimitPerOwner
     }
 
+    def "should not exceed limit when wallets are created concurrently"() {
+        given:
+        String ownerId = UUID.randomUUID().toString()
+
+        when:
+        List<HttpStatusCode> statuses = Flux.range(0, walletsLimitPerOwner + 3)
+                .flatMap({ i ->
+                    Mono.fromCallable({ performCreateWallet(new CreateWalletRequest(ownerId)).returnResult(String).getStatus() })
+                            .subscribeOn(Schedulers.boundedElastic())
+                })
+                .collectList()
+                .block(Duration.ofSeconds(10))
+
+        then:
+        statuses.count { it == HttpStatus.CREATED } == walletsLimitPerOwner
+        statuses.count { it == HttpStatus.BAD_REQUEST } == 3
+
+        and:
+        testHelper.getAllWalletsCount() == walletsLimitPerOwner
+    }
+
     private ResponseSpec performGetWallets(int pageNumber, int pageSize) {
         webTestClient.get()
                 .uri("${WalletController.BASE_URL}?pageNumber={pageNumber}&pageSize={pageSize}", pageNumber, pageSize)
                 .exchange()
     }
 
+    private ResponseSpec performGetWalletsByCursor(String after, int pageSize) {
+        webTestClient.get()
+                .uri({ uriBuilder ->
+                    uriBuilder.path("${WalletController.BASE_URL}/cursor")
+                            .queryParamIfPresent("after", Optional.ofNullable(after))
+                            .queryParam("pageSize", pageSize)
+                            .build()
+                })
+                .exchange()
+    }
+
     private ResponseSpec performGetWalletById(String walletId) {
         webTestClient.get()
                 .uri("${WalletController.BASE_URL}/{walletId}", walletId)
@@ -0,0 +1,125 @@
+package io.hyde.wallet.infrastructure.adapters.messaging.serialization
+
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.BlockFundsCommandEvent
+import io.hyde.wallet.infrastructure.adapters.input.messaging.events.WalletCommandEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.ErrorEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsBlockedEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent
+import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletSnapshot
+import org.apache.kafka.common.errors.SerializationException
+import org.apache.kafka.common.header.Headers
+import org.apache.kafka.common.header.internals.RecordHeaders
+import org.springframework.kafka.support.serializer.JsonDeserializer
+import org.springframework.kafka.support.serializer.JsonSerializer
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.time.LocalDateTime
+
+class WalletMessageSerializationTest extends Specification {
+
+    private static final String TOPIC = "wallet-events"
+
+    private WalletMessageDeserializer deserializer = new WalletMessageDeserializer()
+
+    def "should serialize and deserialize wallet messages in #format format"() {
+        given:
+        WalletMessageSerializer serializer = createSerializer(format)
+        Headers headers = new RecordHeaders()
+
+        when:
+        byte[] data = serializer.serialize(TOPIC, headers, message)
+
+        then:
+        new String(headers.lastHeader(WalletMessageTypes.TYPE_HEADER).value(), StandardCharsets.UTF_8) == typeId
+        deserializer.deserialize(TOPIC, headers, data) == message
+
+        where:
+        format   | message        | typeId
+        "json"   | command()      | "block-funds"
+        "json"   | event()        | "funds-blocked"
+        "json"   | errorEvent()   | "error"
+        "smile"  | command()      | "block-funds"
+        "smile"  | event()        | "funds-blocked"
+        "smile"  | errorEvent()   | "error"
+    }
+
+    def "should write same JSON payload as Spring's JsonSerializer"() {
+        given:
+        WalletEvent event = event()
+
+        expect:
+        new String(createSerializer("json").serialize(TOPIC, new RecordHeaders(), event), StandardCharsets.UTF_8) ==
+                new String(new JsonSerializer<WalletEvent>().serialize(TOPIC, new RecordHeaders(), event), StandardCharsets.UTF_8)
+    }
+
+    def "should write smaller smile messages"() {
+        given:
+        WalletEvent event = event()
+
+        expect:
+        createSerializer("smile").serialize(TOPIC, new RecordHeaders(), event).length <
+                createSerializer("json").serialize(TOPIC, new RecordHeaders(), event).length
+    }
+
+    def "should deserialize messages sent by Spring's JsonSerializer"() {
+        given:
+        Headers headers = new RecordHeaders()
+        byte[] data = new JsonSerializer<WalletCommandEvent>().serialize(TOPIC, headers, command())
+
+        expect:
+        deserializer.deserialize(TOPIC, headers, data) == command()
+    }
+
+    def "should read messages of WalletMessageSerializer with Spring's JsonDeserializer when type is given"() {
+        given:
+        Headers headers = new RecordHeaders()
+        byte[] data = createSerializer("json").serialize(TOPIC, headers, event())
+        JsonDeserializer<FundsBlockedEvent> jsonDeserializer = new JsonDeserializer<>(FundsBlockedEvent, false)
+
+        expect:
+        jsonDeserializer.deserialize(TOPIC, headers, data) == event()
+    }
+
+    def "should reject unknown message types"() {
+        when:
+        createSerializer("json").serialize(TOPIC, new RecordHeaders(), "not a wallet message")
+
+        then:
+        thrown(SerializationException)
+
+        when:
+        Headers headers = new RecordHeaders()
+        headers.add(WalletMessageTypes.TYPE_HEADER, "unknown".getBytes(StandardCharsets.UTF_8))
+        deserializer.deserialize(TOPIC, headers, "{}".getBytes(StandardCharsets.UTF_8))
+
+        then:
+        thrown(SerializationException)
+    }
+
+    private static WalletMessageSerializer createSerializer(String format) {
+        WalletMessageSerializer serializer = new WalletMessageSerializer()
+        serializer.configure([(WalletMessageFormat.FORMAT_CONFIG): format], false)
+        return serializer
+    }
+
+    private static WalletCommandEvent command() {
+        return new BlockFundsCommandEvent("command1", "wallet1", "BTC", new BigDecimal("0.12345678"))
+    }
+
+    private static WalletEvent event() {
+        return new FundsBlockedEvent(
+                "command1",
+                "BTC",
+                new BigDecimal("0.12345678"),
+                "lock1",
+                new WalletSnapshot("wallet1", "owner1", [
+                        new WalletSnapshot.FundSnapshot("BTC", new BigDecimal("999999.87654322"), new BigDecimal("0.12345678")),
+                        new WalletSnapshot.FundSnapshot("ETH", new BigDecimal("10"), BigDecimal.ZERO)]),
+                LocalDateTime.of(2025, 1, 1, 12, 30, 15))
+    }
+
+    private static WalletEvent errorEvent() {
+        return new ErrorEvent("command1", "wallet1", "Insufficient funds")
+    }
+}
@@ -0,0 +1,97 @@
+package io.hyde.wallet.infrastructure.adapters.output.cache
+
+import io.hyde.wallet.domain.model.Wallet
+import io.hyde.wallet.domain.model.command.DepositFundsCommand
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Duration
+
+class GuavaWalletCacheTest extends Specification {
+
+    private static final String BTC = "BTC"
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private GuavaWalletCache cache = new GuavaWalletCache(10, Duration.ofMinutes(1), meterRegistry)
+
+    def "should return copy of cached wallet"() {
+        given:
+        Wallet wallet = wallet("wallet-1", 1)
+        cache.put(wallet)
+
+        when:
+        Wallet cached = cache.get(wallet.getId()).get()
+        cached.execute(new DepositFundsCommand(UUID.randomUUID().toString(), wallet.getId(), BTC, 1.00), Clock.systemUTC())
+
+        then:
+        cache.get(wallet.getId()).get().getFunds().isEmpty()
+    }
+
+    def "should keep wallet with higher version"() {
+        given:
+        cache.put(wallet("wallet-1", 2))
+
+        when:
+        cache.put(wallet("wallet-1", 1))
+
+        then:
+        cache.get("wallet-1").get().getVersion() == 2
+
+        when:
+        cache.put(wallet("wallet-1", 3))
+
+        then:
+        cache.get("wallet-1").get().getVersion() == 3
+    }
+
+    def "should invalidate cached wallets"() {
+        given:
+        cache.put(wallet("wallet-1", 1))
+        cache.put(wallet("wallet-2", 1))
+
+        when:
+        cache.invalidate("wallet-1")
+
+        then:
+        cache.get("wallet-1").isEmpty()
+        cache.get("wallet-2").isPresent()
+
+        when:
+        cache.invalidateAll()
+
+        then:
+        cache.get("wallet-2").isEmpty()
+    }
+
+    def "should not cache wallets when maximum size is zero"() {
+        given:
+        GuavaWalletCache disabledCache = new GuavaWalletCache(0, Duration.ofMinutes(1), new SimpleMeterRegistry())
+
+        when:
+        disabledCache.put(wallet("wallet-1", 1))
+
+        then:
+        disabledCache.get("wallet-1").isEmpty()
+    }
+
+    def "should record cache metrics"() {
+        given:
+        cache.put(wallet("wallet-1", 1))
+
+        when:
+        cache.get("wallet-1")
+        cache.get("wallet-2")
+
+        then:
+        meterRegistry.get("cache.gets").tag("cache", "wallets").tag("result", "hit").functionCounter().count() == 1
+        meterRegistry.get("cache.gets").tag("cache", "wallets").tag("result", "miss").functionCounter().count() == 1
+    }
+
+    private static Wallet wallet(String id, int version) {
+        Wallet wallet = Wallet.forOwner(UUID.randomUUID().toString())
+        wallet.@id = id
+        wallet.@version = version
+        return wallet
+    }
+}
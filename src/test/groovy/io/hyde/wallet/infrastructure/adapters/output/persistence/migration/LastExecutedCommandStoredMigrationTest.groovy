@@ -0,0 +1,60 @@
+package io.hyde.wallet.infrastructure.adapters.output.persistence.migration
+
+import io.hyde.wallet.BaseIntegrationTest
+import io.hyde.wallet.domain.model.Wallet
+import io.hyde.wallet.domain.model.command.DepositFundsCommand
+import org.bson.Document
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate
+import org.springframework.data.mongodb.core.query.Criteria
+import org.springframework.data.mongodb.core.query.Query
+import org.springframework.data.mongodb.core.query.Update
+import spock.lang.Subject
+
+import java.time.Duration
+
+class LastExecutedCommandStoredMigrationTest extends BaseIntegrationTest {
+
+    private static final String BTC = "BTC"
+
+    @Autowired
+    @Subject
+    private LastExecutedCommandStoredMigration migration
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate
+
+    def "should mark wallets stored before migration as not having stored last executed command"() {
+        given:
+        Wallet walletWithCommand = testHelper.initWallet()
+        walletWithCommand = testHelper.executeAndStoreSendCommands(
+                walletWithCommand,
+                new DepositFundsCommand(UUID.randomUUID().toString(), walletWithCommand.getId(), BTC, 11.11))
+        Wallet walletWithoutCommand = testHelper.initWallet()
+        removeLastExecutedCommandStoredField(walletWithCommand, walletWithoutCommand)
+
+        when:
+        long migratedCount = migration.migrate().block(Duration.ofSeconds(1))
+
+        then:
+        migratedCount == 1
+
+        and:
+        getLastExecutedCommandStoredField(walletWithCommand) == false
+        getLastExecutedCommandStoredField(walletWithoutCommand) == null
+    }
+
+    private void removeLastExecutedCommandStoredField(Wallet... wallets) {
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("_id").in(wallets*.getId())),
+                new Update().unset("lastExecutedCommandStored"),
+                Wallet)
+                .block(Duration.ofSeconds(1))
+    }
+
+    private Boolean getLastExecutedCommandStoredField(Wallet wallet) {
+        return mongoTemplate.findById(wallet.getId(), Document, "wallet")
+                .block(Duration.ofSeconds(1))
+                .getBoolean("lastExecutedCommandStored")
+    }
+}
@@ -14,8 +14,10 @@ import io.hyde.wallet.infrastructure.adapters.output.messaging.events.FundsWithd
 import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletEvent
 import io.hyde.wallet.infrastructure.adapters.output.messaging.events.WalletSnapshot
 import io.hyde.wallet.infrastructure.adapters.output.persistence.repository.ExecutedCommandRepository
+import io.hyde.wallet.infrastructure.adapters.output.persistence.repository.OwnerWalletsRepository
 import io.hyde.wallet.infrastructure.adapters.output.persistence.repository.TokenRepository
 import io.hyde.wallet.infrastructure.adapters.output.persistence.repository.WalletRepository
+import org.springframework.beans.factory.annotation.Value
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties
 import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate
@@ -36,19 +38,25 @@ class TestHelper {
     private final TokenRepository tokenRepository
     private final WalletRepository walletRepository
     private final ExecutedCommandRepository executedCommandRepository
+    private final OwnerWalletsRepository ownerWalletsRepository
+    private final String walletCommandsTopic
     private final ReactiveKafkaProducerTemplate<String, WalletCommandEvent> walletEventsProducer
     private final Flux<ReceiverRecord<String, WalletEvent>> walletEvents
     private final Flux<ReceiverRecord<String, WalletCommandEvent>> walletCommandsDltEvents
 
     TestHelper(Clock clock,
                KafkaProperties kafkaProperties,
+               @Value('${spring.kafka.consumer.topics.wallet-commands.name}') String walletCommandsTopic,
                TokenRepository tokenRepository,
                WalletRepository walletRepository,
-               ExecutedCommandRepository executedCommandRepository) {
+               ExecutedCommandRepository executedCommandRepository,
+               OwnerWalletsRepository ownerWalletsRepository) {
         this.clock = clock
         this.tokenRepository = tokenRepository
         this.walletRepository = walletRepository
         this.executedCommandRepository = executedCommandRepository
+        this.ownerWalletsRepository = ownerWalletsRepository
+        this.walletCommandsTopic = walletCommandsTopic
         this.walletEventsProducer = new ReactiveKafkaProducerTemplate<>(
                 SenderOptions.create(kafkaProperties.buildProducerProperties()))
 
@@ -60,7 +68,7 @@ class TestHelper {
 
         ReceiverOptions<String, WalletCommandEvent> walletCommandsDltReceiverOptions =
                 ReceiverOptions.<String, WalletCommandEvent> create(kafkaProperties.buildConsumerProperties())
-                        .subscription(Collections.singletonList(BaseIntegrationTest.WALLET_COMMANDS_DEAD_LETTER_TOPIC));
+                        .subscription(Collections.singletonList(walletCommandsTopic + "-dlt"));
 
         this.walletCommandsDltEvents = new ReactiveKafkaConsumerTemplate<>(walletCommandsDltReceiverOptions).receive()
     }
@@ -69,10 +77,11 @@ class TestHelper {
         tokenRepository.deleteAll().block(Duration.ofSeconds(1))
         walletRepository.deleteAll().block(Duration.ofSeconds(1))
         executedCommandRepository.deleteAll().block(Duration.ofSeconds(1))
+        ownerWalletsRepository.deleteAll().block(Duration.ofSeconds(1))
     }
 
-    Token initToken(String token) {
-        return tokenRepository.save(Token.ofName(token)).block(Duration.ofSeconds(1))
+    Token initToken(String token, Integer scale = null) {
+        return tokenRepository.save(Token.of(token, scale)).block(Duration.ofSeconds(1))
     }
 
     Wallet initWallet(String ownerId = UUID.randomUUID().toString()) {
@@ -139,7 +148,7 @@ class TestHelper {
     }
 
     private void sendWalletCommandEventsFlux(Flux<WalletCommandEvent> events) {
-        events.flatMap(event -> walletEventsProducer.send(BaseIntegrationTest.WALLET_COMMANDS_TOPIC, event.walletId(), event))
+        events.flatMap(event -> walletEventsProducer.send(walletCommandsTopic, event.walletId(), event))
                 .blockLast()
     }
 
@@ -229,6 +238,14 @@ class TestHelper {
                 .block(Duration.ofSeconds(5))
     }
 
+    List<WalletEvent> getNextWalletEvents(int count) {
+        return walletEvents.take(count)
+                .concatMap(record -> record.receiverOffset().commit()
+                        .then(Mono.just(record.value())))
+                .collectList()
+                .block(Duration.ofSeconds(10))
+    }
+
     void verifyNoEventSent() {
         assert walletEvents.next()
                 .timeout(Duration.ofSeconds(3), Mono.empty())